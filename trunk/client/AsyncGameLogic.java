@@ -0,0 +1,56 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** GameLogic which thinks too long to choose a move on the
+ * transport thread. HeadlessPlayer asks it for moves with
+ * nextMove(MoveCallback) instead of nextMove().
+ */
+public interface AsyncGameLogic extends GameLogic{
+
+    /** Receives a move chosen by an AsyncGameLogic. Can be called
+        on any thread, even before nextMove returns. */
+    public interface MoveCallback{
+        /** @param move Move to make. It isn't applied yet. */
+        public void moveChosen(final MessageBuffer move);
+        public void moveFailed(final Throwable t);
+    }
+
+    /** Starts choosing a move. The logic mustn't need its game
+        state after returning, since moves may be applied to it
+        while it's thinking.
+        @return False if it's not our turn, then callback isn't
+        called. Otherwise callback is called exactly once. */
+    public boolean nextMove(final MoveCallback callback);
+}
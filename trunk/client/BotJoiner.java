@@ -0,0 +1,101 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.net.InetSocketAddress;
+
+/** Seats a ThousandBot at an existing table, like TableJoiner does
+ * for a human player.
+ *
+ * Usage: BotJoiner host port tableId screenName [moveTimeMillis]
+ */
+public class BotJoiner{
+
+    public static void main(final String[] arguments){
+        try{
+            final String serverHost = arguments[0];
+            final int serverPort = Integer.parseInt(arguments[1]);
+            final long tableId = Long.parseLong(arguments[2]);
+            final String screenName = arguments[3];
+            final long moveTimeMillis
+                = (arguments.length>4 ? Long.parseLong(arguments[4]) : 1000);
+
+            final SelectorTransport transport
+                = new SelectorTransport(screenName){
+                        public void d(final String message){
+                            System.err.println(message);
+                        }
+                        public void e(final String message,final Throwable t){
+                            System.err.println(message);
+                            t.printStackTrace();
+                        }
+                    };
+
+            final ThousandBot bot
+                = new ThousandBot(moveTimeMillis,
+                                  Runtime.getRuntime().availableProcessors(),
+                                  new java.util.Random());
+
+            final HeadlessPlayer player
+                = new HeadlessPlayer(screenName,bot){
+                        public void d(final String message){
+                            System.err.println(message);
+                        }
+                        public void e(final String message,final Throwable t){
+                            System.err.println(message);
+                            t.printStackTrace();
+                        }
+                        public void tableCreated(final long tableId){}
+                        public void moveMade(){}
+                        public void gameEnded(final int[] endResult){
+                            System.out.println("Game over: "+endResult[0]
+                                               +" "+endResult[1]
+                                               +" "+endResult[2]);
+                        }
+                        public void disconnected(final Exception cause){
+                            System.err.println("Disconnected: "+cause);
+                            transport.quit();
+                        }
+                    };
+
+            player.join(transport,
+                        new InetSocketAddress(serverHost,serverPort),
+                        tableId);
+        }catch(final Exception e){
+            System.err.println("Exception: "+e);
+            System.err.println("Stack trace:");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/** Splits received bytes into frames: two bytes of length followed
+ * by a message. Bytes are read in large chunks into one reusable
+ * array, so a single read can bring several frames or a part of
+ * one. Complete frames are returned by next() as views of that
+ * array, without copying.
+ */
+public class FrameDecoder{
+
+    private byte[] data;
+    //Received bytes not returned as frames yet are data[start,end):
+    private int start;
+    private int end;
+    //Wraps data for reading from channels:
+    private ByteBuffer dataBuffer;
+    //Returned by next():
+    private final MessageBuffer frame;
+
+    public FrameDecoder(final int capacity){
+        this.data = new byte[Math.max(capacity,2)];
+        this.start = 0;
+        this.end = 0;
+        this.dataBuffer = ByteBuffer.wrap(this.data);
+        this.frame = new MessageBuffer(0);
+    }
+
+    /** Moves unread bytes to the beginning of the array, growing
+        it if the frame being received wouldn't fit. */
+    private void makeRoom(){
+        final int pending = this.end-this.start;
+
+        int needed = 2;
+        if(pending>=2)
+            needed = 2+(((0xFF&this.data[this.start])<<8)
+                        |(0xFF&this.data[this.start+1]));
+
+        if(this.start==0 && needed<=this.data.length)
+            return;
+
+        final byte[] newData
+            = (needed>this.data.length
+               ?new byte[Math.max(needed,2*this.data.length)]
+               :this.data);
+        System.arraycopy(this.data,this.start,newData,0,pending);
+        if(newData!=this.data){
+            this.data = newData;
+            this.dataBuffer = ByteBuffer.wrap(this.data);
+        }
+        this.start = 0;
+        this.end = pending;
+    }
+
+    /** Reads available bytes, blocking until there is at least
+        one. @return false on end of stream. */
+    public boolean read(final InputStream stream) throws IOException{
+        this.makeRoom();
+        final int n = stream.read(this.data,this.end,this.data.length-this.end);
+        if(n<0)
+            return false;
+        this.end += n;
+        return true;
+    }
+
+    /** Reads available bytes from a (possibly non-blocking)
+        channel. @return false on end of stream. */
+    public boolean read(final ReadableByteChannel channel) throws IOException{
+        this.makeRoom();
+        this.dataBuffer.limit(this.data.length);
+        this.dataBuffer.position(this.end);
+        final int n = channel.read(this.dataBuffer);
+        if(n<0)
+            return false;
+        this.end += n;
+        return true;
+    }
+
+    /** @return Next complete frame's message or null if there's
+        none yet. It's only valid until the next call to next() or
+        read(...). */
+    public MessageBuffer next(){
+        if(this.end-this.start<2)
+            return null;
+
+        final int incomingMessageLength
+            = ((0xFF&this.data[this.start])<<8)
+            |(0xFF&this.data[this.start+1]);
+
+        if(this.end-this.start<2+incomingMessageLength)
+            return null;
+
+        this.frame.wrap(this.data,this.start+2,incomingMessageLength);
+        this.start += 2+incomingMessageLength;
+        if(this.start==this.end){
+            this.start = 0;
+            this.end = 0;
+        }
+        return this.frame;
+    }
+}
@@ -0,0 +1,81 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** Rules of a game as seen by one player at a table, without any
+ * user interface. Used by HeadlessPlayer, so bots and load tests
+ * can play without AWT or Swing.
+ */
+public interface GameLogic{
+
+    //Bit mask for specifying whether the game shall continue or finish.
+    public static final int CONTINUITY_MASK = 0x01;
+    public static final int CONTINUE = 0x00;
+    public static final int END = 0x01;
+
+    //Bit mask for specifying whether the move sent was valid.
+    public static final int VALIDITY_MASK = 0x02;
+    public static final int VALID = 0x00;
+    public static final int INVALID = 0x02;
+
+    /** 
+     @return Returns number of players playing.
+    */
+    public byte getNumberOfPlayers();
+
+    /** Starts a new game.
+        @param table Table with turnGamePlayerToTablePlayerId and
+        myTurnGamePlayer already set.
+        @param initialMessage Can be null if no initialMessage was
+        sent by the server.*/
+    public boolean initialize(final Table table,
+                              final MessageBuffer initialMessage);
+
+    /** Applies a move made by any player, including us.
+        @return Combination of VALID/INVALID and CONTINUE/END. If
+        the game ended, endResult is filled for all players. */
+    public int moveMade(final MessageBuffer move,
+                        final int[] endResult);
+
+    /** @return Move we want to make now, or null if it's not our
+        turn. It's only valid until the next call. */
+    public MessageBuffer nextMove();
+
+    /** Server usually doesn't send our own moves back to us, so we
+        apply them ourselves. If it will, because it has to tell us
+        more than we sent, the move mustn't be applied before the
+        answer comes.
+        @param move Our move, not applied yet. */
+    public boolean serverEchoes(final MessageBuffer move);
+}
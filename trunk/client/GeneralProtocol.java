@@ -72,6 +72,32 @@ public class GeneralProtocol{
   //Constants:
 
 
+  //Message type for every message type byte,
+  //indexed by that byte.
+  private static final MessageType[] MESSAGE_TYPES = {
+    MessageType.UNKNOWN_MESSAGE_1,
+    MessageType.CREATE_TICTACTOE_TABLE_1,
+    MessageType.CREATE_THOUSAND_TABLE_1,
+    MessageType.TABLE_CREATED_1,
+    MessageType.SAY_1,
+    MessageType.SAID_1,
+    MessageType.JOIN_TABLE_TO_PLAY_1,
+    MessageType.YOU_JOINED_TABLE_1,
+    MessageType.JOINING_TABLE_FAILED_INCORRECT_TABLE_ID_1,
+    MessageType.NEW_PLAYER_JOINED_TABLE_1,
+    MessageType.PLAYER_LEFT_TABLE_1,
+    MessageType.GAME_STARTED_WITHOUT_INITIAL_MESSAGE_1,
+    MessageType.GAME_STARTED_WITH_INITIAL_MESSAGE_1,
+    MessageType.MAKE_MOVE_1,
+    MessageType.MOVE_MADE_1};
+
+  //Message type for a given message type byte.
+  public static MessageType lookupMessageType(final byte messageTypeByte){
+    if(messageTypeByte<0 || messageTypeByte>=MESSAGE_TYPES.length)
+      return MessageType.UNKNOWN_MESSAGE_1;
+    return MESSAGE_TYPES[messageTypeByte];
+  }
+
   //This method can be used for rapid message
   //type lookup, so you don't need to try
   //deserializing using all deserializers.
@@ -80,36 +106,29 @@ public class GeneralProtocol{
   //some known type. It doesn't read the whole
   //message, just the part where message type
   //is present.
-  public static MessageType lookupMessageType(final Vector<Byte> message){
-    try{
-        final Iterator<Byte> iterator
-         = message.iterator();
-        
-        Message.read1Byte(iterator);
-        
-        final byte byteMessageType
-         = Message.read1Byte(iterator);
-        
-        switch(byteMessageType){
-        case 1: return MessageType.CREATE_TICTACTOE_TABLE_1;
-        case 2: return MessageType.CREATE_THOUSAND_TABLE_1;
-        case 3: return MessageType.TABLE_CREATED_1;
-        case 4: return MessageType.SAY_1;
-        case 5: return MessageType.SAID_1;
-        case 6: return MessageType.JOIN_TABLE_TO_PLAY_1;
-        case 7: return MessageType.YOU_JOINED_TABLE_1;
-        case 8: return MessageType.JOINING_TABLE_FAILED_INCORRECT_TABLE_ID_1;
-        case 9: return MessageType.NEW_PLAYER_JOINED_TABLE_1;
-        case 10: return MessageType.PLAYER_LEFT_TABLE_1;
-        case 11: return MessageType.GAME_STARTED_WITHOUT_INITIAL_MESSAGE_1;
-        case 12: return MessageType.GAME_STARTED_WITH_INITIAL_MESSAGE_1;
-        case 13: return MessageType.MAKE_MOVE_1;
-        case 14: return MessageType.MOVE_MADE_1;
-        default: return MessageType.UNKNOWN_MESSAGE_1;
-        }
-    }catch(Exception e){
-        return MessageType.UNKNOWN_MESSAGE_1;
-    }
+  public static MessageType lookupMessageType(final MessageBuffer message){
+    if(message.size()<2)
+      return MessageType.UNKNOWN_MESSAGE_1;
+    return lookupMessageType(message.get(1));
+  }
+
+  //Sizes of serialized messages, known when this file
+  //was generated. Indexed by MessageType.ordinal().
+  private static final int[] FIXED_ENCODED_SIZE
+   = {-1,2,2,10,-1,-1,-1,3,2,-1,3,-1,-1,-1,-1};
+  private static final int[] MINIMUM_ENCODED_SIZE
+   = {2,2,2,10,4,5,11,3,2,4,3,4,6,4,4};
+
+  //Exact size of every message of this type, or -1 if
+  //it contains strings or binary data.
+  public static int fixedEncodedSize(final MessageType messageType){
+    return FIXED_ENCODED_SIZE[messageType.ordinal()];
+  }
+
+  //Size of the shortest message of this type. A message
+  //shorter than that can't be deserialized.
+  public static int minimumEncodedSize(final MessageType messageType){
+    return MINIMUM_ENCODED_SIZE[messageType.ordinal()];
   }
 
   //Message CREATE_TICTACTOE_TABLE:
@@ -119,9 +138,14 @@ public class GeneralProtocol{
   //In protocol version 1 this message has id 1.
   //Sent by client when creating a new Tic Tac Toe table.
 
-  public static Vector<Byte> serialize_1_CREATE_TICTACTOE_TABLE(){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+  //Exact number of bytes serialize_1_CREATE_TICTACTOE_TABLE will produce.
+  public static int encodedSize_1_CREATE_TICTACTOE_TABLE(){
+    return 2;
+  }
+
+  public static MessageBuffer serialize_1_CREATE_TICTACTOE_TABLE(){
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_CREATE_TICTACTOE_TABLE());
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -133,14 +157,19 @@ public class GeneralProtocol{
 
   //Message CREATE_THOUSAND_TABLE:
 
-  //This message will create: [CPP_SERIALIZER, CPP_DESERIALIZER, JAVA_SERIALIZER].
+  //This message will create: [CPP_DESERIALIZER, JAVA_SERIALIZER].
 
   //In protocol version 1 this message has id 2.
   //Sent by client when creating a new Thousand table.
 
-  public static Vector<Byte> serialize_1_CREATE_THOUSAND_TABLE(){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+  //Exact number of bytes serialize_1_CREATE_THOUSAND_TABLE will produce.
+  public static int encodedSize_1_CREATE_THOUSAND_TABLE(){
+    return 2;
+  }
+
+  public static MessageBuffer serialize_1_CREATE_THOUSAND_TABLE(){
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_CREATE_THOUSAND_TABLE());
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -152,7 +181,7 @@ public class GeneralProtocol{
 
   //Message TABLE_CREATED:
 
-  //This message will create: [CPP_SERIALIZER, CPP_DESERIALIZER, JAVA_DESERIALIZER].
+  //This message will create: [CPP_SERIALIZER, JAVA_DESERIALIZER].
 
   //In protocol version 1 this message has id 3.
   //Sent by server after table has been created.
@@ -160,25 +189,52 @@ public class GeneralProtocol{
   public static class Deserialized_1_TABLE_CREATED{
     //ID for newly created table.
     public final long id;
-    public Deserialized_1_TABLE_CREATED(final Vector<Byte> inputMessage)
+    public Deserialized_1_TABLE_CREATED(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=3)
+        if(Message.read1Byte(inputMessage)!=3)
           throw new MessageDeserializationException();
 
     //Deserialize id:
-      this.id = Message.read8Bytes(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.id = Message.read8Bytes(inputMessage);
+    }
+  }
+
+  //Reusable view of a TABLE_CREATED message. Unlike
+  //Deserialized_1_TABLE_CREATED it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_TABLE_CREATED{
+    private MessageBuffer message;
+    private int idOffset;
+
+    //Returns false if message is not a well-formed
+    //TABLE_CREATED. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=3)
+        return false;
+
+      int position = 2;
+      this.idOffset = position;
+      position += 8;
+      if(position>end)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //ID for newly created table.
+    public long id(){
+      return Message.read8Bytes(this.message,this.idOffset);
     }
   }
 
@@ -189,11 +245,17 @@ public class GeneralProtocol{
   //In protocol version 1 this message has id 4.
   //Sent by client when saying something (chat message).
 
-  public static Vector<Byte> serialize_1_SAY(
+  //Exact number of bytes serialize_1_SAY will produce.
+  public static int encodedSize_1_SAY(final MessageBuffer text_UTF8){
+    return 4
+      +text_UTF8.size();
+  }
+
+  public static MessageBuffer serialize_1_SAY(
         //Text of the chat message in UTF8 encoding.
-        final java.util.Vector<Byte> text_UTF8){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+        final MessageBuffer text_UTF8){
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_SAY(text_UTF8));
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -216,28 +278,70 @@ public class GeneralProtocol{
     //Who said it.
     public final byte tablePlayerId;
     //Text of the chat message in UTF8 encoding.
-    public final java.util.Vector<Byte> text_UTF8;
-    public Deserialized_1_SAID(final Vector<Byte> inputMessage)
+    public final MessageBuffer text_UTF8;
+    public Deserialized_1_SAID(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=5)
+        if(Message.read1Byte(inputMessage)!=5)
           throw new MessageDeserializationException();
 
     //Deserialize tablePlayerId:
-      this.tablePlayerId = Message.read1Byte(iterator);
+      this.tablePlayerId = Message.read1Byte(inputMessage);
     //Deserialize text_UTF8:
-      this.text_UTF8 = Message.readBinary(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.text_UTF8 = Message.readBinary(inputMessage);
+    }
+  }
+
+  //Reusable view of a SAID message. Unlike
+  //Deserialized_1_SAID it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_SAID{
+    private MessageBuffer message;
+    private int tablePlayerIdOffset;
+    private int text_UTF8Offset;
+    private final MessageBuffer text_UTF8 = new MessageBuffer(0);
+
+    //Returns false if message is not a well-formed
+    //SAID. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=5)
+        return false;
+
+      int position = 2;
+      this.tablePlayerIdOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.text_UTF8Offset = position;
+      position = Message.skipBinary(message,position,end);
+      if(position<0)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //Who said it.
+    public byte tablePlayerId(){
+      return Message.read1Byte(this.message,this.tablePlayerIdOffset);
+    }
+
+    //Text of the chat message in UTF8 encoding.
+    public MessageBuffer text_UTF8(){
+      this.text_UTF8.wrap
+        (this.message.array(),
+         this.message.arrayOffset()+this.text_UTF8Offset+2,
+         Message.readBinaryLength(this.message,this.text_UTF8Offset));
+      return this.text_UTF8;
     }
   }
 
@@ -248,13 +352,19 @@ public class GeneralProtocol{
   //In protocol version 1 this message has id 6.
   //Sent by client when joining some table to play.
 
-  public static Vector<Byte> serialize_1_JOIN_TABLE_TO_PLAY(
+  //Exact number of bytes serialize_1_JOIN_TABLE_TO_PLAY will produce.
+  public static int encodedSize_1_JOIN_TABLE_TO_PLAY(final String screenName){
+    return 11
+      +screenName.length();
+  }
+
+  public static MessageBuffer serialize_1_JOIN_TABLE_TO_PLAY(
         //Table id.
         final long tableId,
         //Name of the player (not unique).
         final String screenName){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_JOIN_TABLE_TO_PLAY(screenName));
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -278,25 +388,52 @@ public class GeneralProtocol{
   public static class Deserialized_1_YOU_JOINED_TABLE{
     //New player's table player id.
     public final byte tablePlayerId;
-    public Deserialized_1_YOU_JOINED_TABLE(final Vector<Byte> inputMessage)
+    public Deserialized_1_YOU_JOINED_TABLE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=7)
+        if(Message.read1Byte(inputMessage)!=7)
           throw new MessageDeserializationException();
 
     //Deserialize tablePlayerId:
-      this.tablePlayerId = Message.read1Byte(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.tablePlayerId = Message.read1Byte(inputMessage);
+    }
+  }
+
+  //Reusable view of a YOU_JOINED_TABLE message. Unlike
+  //Deserialized_1_YOU_JOINED_TABLE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_YOU_JOINED_TABLE{
+    private MessageBuffer message;
+    private int tablePlayerIdOffset;
+
+    //Returns false if message is not a well-formed
+    //YOU_JOINED_TABLE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=7)
+        return false;
+
+      int position = 2;
+      this.tablePlayerIdOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //New player's table player id.
+    public byte tablePlayerId(){
+      return Message.read1Byte(this.message,this.tablePlayerIdOffset);
     }
   }
 
@@ -308,23 +445,38 @@ public class GeneralProtocol{
   //Sent by server to new player who joined a table.
 
   public static class Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID{
-    public Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID(final Vector<Byte> inputMessage)
+    public Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=8)
+        if(Message.read1Byte(inputMessage)!=8)
           throw new MessageDeserializationException();
 
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+    }
+  }
+
+  //Reusable view of a JOINING_TABLE_FAILED_INCORRECT_TABLE_ID message. Unlike
+  //Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID{
+    private MessageBuffer message;
+
+    //Returns false if message is not a well-formed
+    //JOINING_TABLE_FAILED_INCORRECT_TABLE_ID. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=8)
+        return false;
+      this.message = message;
+      return true;
     }
   }
 
@@ -340,27 +492,64 @@ public class GeneralProtocol{
     public final String screenName;
     //New player's table player id.
     public final byte tablePlayerId;
-    public Deserialized_1_NEW_PLAYER_JOINED_TABLE(final Vector<Byte> inputMessage)
+    public Deserialized_1_NEW_PLAYER_JOINED_TABLE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=9)
+        if(Message.read1Byte(inputMessage)!=9)
           throw new MessageDeserializationException();
 
     //Deserialize screenName:
-      this.screenName = Message.readCString(iterator);
+      this.screenName = Message.readCString(inputMessage);
     //Deserialize tablePlayerId:
-      this.tablePlayerId = Message.read1Byte(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.tablePlayerId = Message.read1Byte(inputMessage);
+    }
+  }
+
+  //Reusable view of a NEW_PLAYER_JOINED_TABLE message. Unlike
+  //Deserialized_1_NEW_PLAYER_JOINED_TABLE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_NEW_PLAYER_JOINED_TABLE{
+    private MessageBuffer message;
+    private int screenNameOffset;
+    private int tablePlayerIdOffset;
+
+    //Returns false if message is not a well-formed
+    //NEW_PLAYER_JOINED_TABLE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=9)
+        return false;
+
+      int position = 2;
+      this.screenNameOffset = position;
+      position = Message.skipCString(message,position,end);
+      if(position<0)
+        return false;
+      this.tablePlayerIdOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //New player's name.
+    public String screenName(){
+      return Message.readCString(this.message,this.screenNameOffset);
+    }
+
+    //New player's table player id.
+    public byte tablePlayerId(){
+      return Message.read1Byte(this.message,this.tablePlayerIdOffset);
     }
   }
 
@@ -374,25 +563,52 @@ public class GeneralProtocol{
   public static class Deserialized_1_PLAYER_LEFT_TABLE{
     //Leaving player's table player id.
     public final byte tablePlayerId;
-    public Deserialized_1_PLAYER_LEFT_TABLE(final Vector<Byte> inputMessage)
+    public Deserialized_1_PLAYER_LEFT_TABLE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=10)
+        if(Message.read1Byte(inputMessage)!=10)
           throw new MessageDeserializationException();
 
     //Deserialize tablePlayerId:
-      this.tablePlayerId = Message.read1Byte(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.tablePlayerId = Message.read1Byte(inputMessage);
+    }
+  }
+
+  //Reusable view of a PLAYER_LEFT_TABLE message. Unlike
+  //Deserialized_1_PLAYER_LEFT_TABLE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_PLAYER_LEFT_TABLE{
+    private MessageBuffer message;
+    private int tablePlayerIdOffset;
+
+    //Returns false if message is not a well-formed
+    //PLAYER_LEFT_TABLE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=10)
+        return false;
+
+      int position = 2;
+      this.tablePlayerIdOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //Leaving player's table player id.
+    public byte tablePlayerId(){
+      return Message.read1Byte(this.message,this.tablePlayerIdOffset);
     }
   }
 
@@ -406,25 +622,57 @@ public class GeneralProtocol{
   public static class Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE{
     //Specifies how many players will play the just-started game, which tablePlayerIdeach of them has, and what's their order.
     public final java.util.Vector<Byte> turnGamePlayerToTablePlayerId;
-    public Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(final Vector<Byte> inputMessage)
+    public Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=11)
+        if(Message.read1Byte(inputMessage)!=11)
           throw new MessageDeserializationException();
 
     //Deserialize turnGamePlayerToTablePlayerId:
-      this.turnGamePlayerToTablePlayerId = Message.readVector(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.turnGamePlayerToTablePlayerId = Message.readVector(inputMessage);
+    }
+  }
+
+  //Reusable view of a GAME_STARTED_WITHOUT_INITIAL_MESSAGE message. Unlike
+  //Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE{
+    private MessageBuffer message;
+    private int turnGamePlayerToTablePlayerIdOffset;
+    private final MessageBuffer turnGamePlayerToTablePlayerId = new MessageBuffer(0);
+
+    //Returns false if message is not a well-formed
+    //GAME_STARTED_WITHOUT_INITIAL_MESSAGE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=11)
+        return false;
+
+      int position = 2;
+      this.turnGamePlayerToTablePlayerIdOffset = position;
+      position = Message.skipBinary(message,position,end);
+      if(position<0)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //Specifies how many players will play the just-started game, which tablePlayerIdeach of them has, and what's their order.
+    public MessageBuffer turnGamePlayerToTablePlayerId(){
+      this.turnGamePlayerToTablePlayerId.wrap
+        (this.message.array(),
+         this.message.arrayOffset()+this.turnGamePlayerToTablePlayerIdOffset+2,
+         Message.readBinaryLength(this.message,this.turnGamePlayerToTablePlayerIdOffset));
+      return this.turnGamePlayerToTablePlayerId;
     }
   }
 
@@ -439,28 +687,75 @@ public class GeneralProtocol{
     //Specifies how many players will play the just-started game, which tablePlayerIdeach of them has, and what's their order.
     public final java.util.Vector<Byte> turnGamePlayerToTablePlayerId;
     //Game-specific initial information.
-    public final java.util.Vector<Byte> initialMessage;
-    public Deserialized_1_GAME_STARTED_WITH_INITIAL_MESSAGE(final Vector<Byte> inputMessage)
+    public final MessageBuffer initialMessage;
+    public Deserialized_1_GAME_STARTED_WITH_INITIAL_MESSAGE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=12)
+        if(Message.read1Byte(inputMessage)!=12)
           throw new MessageDeserializationException();
 
     //Deserialize turnGamePlayerToTablePlayerId:
-      this.turnGamePlayerToTablePlayerId = Message.readVector(iterator);
+      this.turnGamePlayerToTablePlayerId = Message.readVector(inputMessage);
     //Deserialize initialMessage:
-      this.initialMessage = Message.readBinary(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.initialMessage = Message.readBinary(inputMessage);
+    }
+  }
+
+  //Reusable view of a GAME_STARTED_WITH_INITIAL_MESSAGE message. Unlike
+  //Deserialized_1_GAME_STARTED_WITH_INITIAL_MESSAGE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_GAME_STARTED_WITH_INITIAL_MESSAGE{
+    private MessageBuffer message;
+    private int turnGamePlayerToTablePlayerIdOffset;
+    private final MessageBuffer turnGamePlayerToTablePlayerId = new MessageBuffer(0);
+    private int initialMessageOffset;
+    private final MessageBuffer initialMessage = new MessageBuffer(0);
+
+    //Returns false if message is not a well-formed
+    //GAME_STARTED_WITH_INITIAL_MESSAGE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=12)
+        return false;
+
+      int position = 2;
+      this.turnGamePlayerToTablePlayerIdOffset = position;
+      position = Message.skipBinary(message,position,end);
+      if(position<0)
+        return false;
+      this.initialMessageOffset = position;
+      position = Message.skipBinary(message,position,end);
+      if(position<0)
+        return false;
+      this.message = message;
+      return true;
+    }
+
+    //Specifies how many players will play the just-started game, which tablePlayerIdeach of them has, and what's their order.
+    public MessageBuffer turnGamePlayerToTablePlayerId(){
+      this.turnGamePlayerToTablePlayerId.wrap
+        (this.message.array(),
+         this.message.arrayOffset()+this.turnGamePlayerToTablePlayerIdOffset+2,
+         Message.readBinaryLength(this.message,this.turnGamePlayerToTablePlayerIdOffset));
+      return this.turnGamePlayerToTablePlayerId;
+    }
+
+    //Game-specific initial information.
+    public MessageBuffer initialMessage(){
+      this.initialMessage.wrap
+        (this.message.array(),
+         this.message.arrayOffset()+this.initialMessageOffset+2,
+         Message.readBinaryLength(this.message,this.initialMessageOffset));
+      return this.initialMessage;
     }
   }
 
@@ -471,11 +766,17 @@ public class GeneralProtocol{
   //In protocol version 1 this message has id 13.
   //Sent by client when making a move.
 
-  public static Vector<Byte> serialize_1_MAKE_MOVE(
+  //Exact number of bytes serialize_1_MAKE_MOVE will produce.
+  public static int encodedSize_1_MAKE_MOVE(final MessageBuffer gameMove){
+    return 4
+      +gameMove.size();
+  }
+
+  public static MessageBuffer serialize_1_MAKE_MOVE(
         //Game-specific move information.
-        final java.util.Vector<Byte> gameMove){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+        final MessageBuffer gameMove){
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_MAKE_MOVE(gameMove));
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -496,140 +797,161 @@ public class GeneralProtocol{
 
   public static class Deserialized_1_MOVE_MADE{
     //Game-specific move information.
-    public final java.util.Vector<Byte> gameMove;
-    public Deserialized_1_MOVE_MADE(final Vector<Byte> inputMessage)
+    public final MessageBuffer gameMove;
+    public Deserialized_1_MOVE_MADE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=14)
+        if(Message.read1Byte(inputMessage)!=14)
           throw new MessageDeserializationException();
 
     //Deserialize gameMove:
-      this.gameMove = Message.readBinary(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.gameMove = Message.readBinary(inputMessage);
     }
   }
 
-
-  public static boolean handle(final Vector<Byte> message,
-                               final GeneralHandler handler){
-
-    switch(GeneralProtocol.lookupMessageType(message))
-    {
-    case TABLE_CREATED_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_TABLE_CREATED deserialized = 
-              new GeneralProtocol.Deserialized_1_TABLE_CREATED(message);
-        return handler.handle_1_TABLE_CREATED(deserialized.id);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
+  //Reusable view of a MOVE_MADE message. Unlike
+  //Deserialized_1_MOVE_MADE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_MOVE_MADE{
+    private MessageBuffer message;
+    private int gameMoveOffset;
+    private final MessageBuffer gameMove = new MessageBuffer(0);
+
+    //Returns false if message is not a well-formed
+    //MOVE_MADE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=14)
+        return false;
+
+      int position = 2;
+      this.gameMoveOffset = position;
+      position = Message.skipBinary(message,position,end);
+      if(position<0)
+        return false;
+      this.message = message;
+      return true;
     }
-    case SAID_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_SAID deserialized = 
-              new GeneralProtocol.Deserialized_1_SAID(message);
-        return handler.handle_1_SAID(deserialized.tablePlayerId,
-                      deserialized.text_UTF8);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    case YOU_JOINED_TABLE_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_YOU_JOINED_TABLE deserialized = 
-              new GeneralProtocol.Deserialized_1_YOU_JOINED_TABLE(message);
-        return handler.handle_1_YOU_JOINED_TABLE(deserialized.tablePlayerId);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    case JOINING_TABLE_FAILED_INCORRECT_TABLE_ID_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID deserialized = 
-              new GeneralProtocol.Deserialized_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID(message);
-        return handler.handle_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID();
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    case NEW_PLAYER_JOINED_TABLE_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_NEW_PLAYER_JOINED_TABLE deserialized = 
-              new GeneralProtocol.Deserialized_1_NEW_PLAYER_JOINED_TABLE(message);
-        return handler.handle_1_NEW_PLAYER_JOINED_TABLE(deserialized.screenName,
-                      deserialized.tablePlayerId);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    case PLAYER_LEFT_TABLE_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_PLAYER_LEFT_TABLE deserialized = 
-              new GeneralProtocol.Deserialized_1_PLAYER_LEFT_TABLE(message);
-        return handler.handle_1_PLAYER_LEFT_TABLE(deserialized.tablePlayerId);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    case GAME_STARTED_WITHOUT_INITIAL_MESSAGE_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE deserialized = 
-              new GeneralProtocol.Deserialized_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(message);
-        return handler.handle_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(deserialized.turnGamePlayerToTablePlayerId);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
+
+    //Game-specific move information.
+    public MessageBuffer gameMove(){
+      this.gameMove.wrap
+        (this.message.array(),
+         this.message.arrayOffset()+this.gameMoveOffset+2,
+         Message.readBinaryLength(this.message,this.gameMoveOffset));
+      return this.gameMove;
     }
-    case GAME_STARTED_WITH_INITIAL_MESSAGE_1:
-      {
-        try{
-          final GeneralProtocol.Deserialized_1_GAME_STARTED_WITH_INITIAL_MESSAGE deserialized = 
-              new GeneralProtocol.Deserialized_1_GAME_STARTED_WITH_INITIAL_MESSAGE(message);
-        return handler.handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE(deserialized.turnGamePlayerToTablePlayerId,
-                      deserialized.initialMessage);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
+  }
+
+
+  //Dispatches messages to a handler using views, so
+  //handling a message doesn't allocate anything. Binary
+  //arguments passed to the handler are only valid
+  //during the call. One decoder per thread.
+  public static final class Decoder{
+    private final View_1_TABLE_CREATED view_TABLE_CREATED
+      = new View_1_TABLE_CREATED();
+    private final View_1_SAID view_SAID
+      = new View_1_SAID();
+    private final View_1_YOU_JOINED_TABLE view_YOU_JOINED_TABLE
+      = new View_1_YOU_JOINED_TABLE();
+    private final View_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID view_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID
+      = new View_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID();
+    private final View_1_NEW_PLAYER_JOINED_TABLE view_NEW_PLAYER_JOINED_TABLE
+      = new View_1_NEW_PLAYER_JOINED_TABLE();
+    private final View_1_PLAYER_LEFT_TABLE view_PLAYER_LEFT_TABLE
+      = new View_1_PLAYER_LEFT_TABLE();
+    private final View_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE view_GAME_STARTED_WITHOUT_INITIAL_MESSAGE
+      = new View_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE();
+    private final View_1_GAME_STARTED_WITH_INITIAL_MESSAGE view_GAME_STARTED_WITH_INITIAL_MESSAGE
+      = new View_1_GAME_STARTED_WITH_INITIAL_MESSAGE();
+    private final View_1_MOVE_MADE view_MOVE_MADE
+      = new View_1_MOVE_MADE();
+
+    public boolean handle(final MessageBuffer message,
+                          final GeneralHandler handler){
+      return this.handle(message,
+                         lookupMessageType(message),
+                         handler);
     }
-    case MOVE_MADE_1:
+
+    //For callers which already know the message type.
+    public boolean handle(final MessageBuffer message,
+                          final MessageType messageType,
+                          final GeneralHandler handler){
+
+      switch(messageType)
       {
-        try{
-          final GeneralProtocol.Deserialized_1_MOVE_MADE deserialized = 
-              new GeneralProtocol.Deserialized_1_MOVE_MADE(message);
-        return handler.handle_1_MOVE_MADE(deserialized.gameMove);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
-    }
-    default:
-      return false;
+      case TABLE_CREATED_1:
+        return this.view_TABLE_CREATED.wrap(message)
+          && handler.handle_1_TABLE_CREATED(this.view_TABLE_CREATED.id());
+      case SAID_1:
+        return this.view_SAID.wrap(message)
+          && handler.handle_1_SAID(this.view_SAID.tablePlayerId(),
+                      this.view_SAID.text_UTF8());
+      case YOU_JOINED_TABLE_1:
+        return this.view_YOU_JOINED_TABLE.wrap(message)
+          && handler.handle_1_YOU_JOINED_TABLE(this.view_YOU_JOINED_TABLE.tablePlayerId());
+      case JOINING_TABLE_FAILED_INCORRECT_TABLE_ID_1:
+        return this.view_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID.wrap(message)
+          && handler.handle_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID();
+      case NEW_PLAYER_JOINED_TABLE_1:
+        return this.view_NEW_PLAYER_JOINED_TABLE.wrap(message)
+          && handler.handle_1_NEW_PLAYER_JOINED_TABLE(this.view_NEW_PLAYER_JOINED_TABLE.screenName(),
+                      this.view_NEW_PLAYER_JOINED_TABLE.tablePlayerId());
+      case PLAYER_LEFT_TABLE_1:
+        return this.view_PLAYER_LEFT_TABLE.wrap(message)
+          && handler.handle_1_PLAYER_LEFT_TABLE(this.view_PLAYER_LEFT_TABLE.tablePlayerId());
+      case GAME_STARTED_WITHOUT_INITIAL_MESSAGE_1:
+        return this.view_GAME_STARTED_WITHOUT_INITIAL_MESSAGE.wrap(message)
+          && handler.handle_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(this.view_GAME_STARTED_WITHOUT_INITIAL_MESSAGE.turnGamePlayerToTablePlayerId().toVector());
+      case GAME_STARTED_WITH_INITIAL_MESSAGE_1:
+        return this.view_GAME_STARTED_WITH_INITIAL_MESSAGE.wrap(message)
+          && handler.handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE(this.view_GAME_STARTED_WITH_INITIAL_MESSAGE.turnGamePlayerToTablePlayerId().toVector(),
+                      this.view_GAME_STARTED_WITH_INITIAL_MESSAGE.initialMessage());
+      case MOVE_MADE_1:
+        return this.view_MOVE_MADE.wrap(message)
+          && handler.handle_1_MOVE_MADE(this.view_MOVE_MADE.gameMove());
+      default:
+        return false;
+      }
     }
   }
 
+  private static final ThreadLocal<Decoder> decoder
+   = new ThreadLocal<Decoder>(){
+      protected Decoder initialValue(){
+        return new Decoder();
+      }
+    };
+
+  public static boolean handle(final MessageBuffer message,
+                               final GeneralHandler handler){
+    return decoder.get().handle(message,handler);
+  }
+
+  public static boolean handle(final MessageBuffer message,
+                               final MessageType messageType,
+                               final GeneralHandler handler){
+    return decoder.get().handle(message,messageType,handler);
+  }
+
 public static interface GeneralHandler
 {
 
   //Handlers for various message types:
   public abstract boolean handle_1_TABLE_CREATED(final long id);
   public abstract boolean handle_1_SAID(final byte tablePlayerId,
-                  final java.util.Vector<Byte> text_UTF8);
+                  final MessageBuffer text_UTF8);
   public abstract boolean handle_1_YOU_JOINED_TABLE(final byte tablePlayerId);
   public abstract boolean handle_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID();
   public abstract boolean handle_1_NEW_PLAYER_JOINED_TABLE(final String screenName,
@@ -637,7 +959,7 @@ public static interface GeneralHandler
   public abstract boolean handle_1_PLAYER_LEFT_TABLE(final byte tablePlayerId);
   public abstract boolean handle_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(final java.util.Vector<Byte> turnGamePlayerToTablePlayerId);
   public abstract boolean handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE(final java.util.Vector<Byte> turnGamePlayerToTablePlayerId,
-                  final java.util.Vector<Byte> initialMessage);
-  public abstract boolean handle_1_MOVE_MADE(final java.util.Vector<Byte> gameMove);
+                  final MessageBuffer initialMessage);
+  public abstract boolean handle_1_MOVE_MADE(final MessageBuffer gameMove);
 }
 }
@@ -0,0 +1,280 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.*;
+
+/** Player without user interface. It joins a table, keeps track
+ * of the table and plays using some GameLogic. Many of them can
+ * share one SelectorTransport, so they're cheap enough to simulate
+ * thousands of players in one JVM. Handlers are called on the
+ * transport thread. An AsyncGameLogic chooses moves on its own
+ * threads, so slow logics don't hold up the other players.
+ */
+public abstract class HeadlessPlayer
+    implements GeneralProtocol.GeneralHandler,SelectorTransport.ClosedHandler{
+
+    private final String screenName;
+    private final GameLogic gameLogic;
+    private final Table table;
+    private final int[] endResult;
+    private volatile SelectorTransport transport;
+    private volatile SelectorTransport.Connection connection;
+    //Counts games started and moves applied, so results of
+    //asynchronous thinking can be dropped when they're stale:
+    private int position;
+    //Position an AsyncGameLogic is thinking about, or -1:
+    private int thinkingPosition;
+
+    public HeadlessPlayer(final String screenName,
+                          final GameLogic gameLogic){
+        this.screenName = screenName;
+        this.gameLogic = gameLogic;
+        this.table = new Table();
+        this.endResult = new int[gameLogic.getNumberOfPlayers()];
+        this.thinkingPosition = -1;
+    }
+
+    public abstract void d(final String message);
+    public abstract void e(final String message,final Throwable t);
+
+    /** Called when a table we asked for has been created. We join
+        it automatically. */
+    public abstract void tableCreated(final long tableId);
+
+    /** Called after every valid move, ours or not. */
+    public abstract void moveMade();
+
+    /** Called when a game at our table has ended. */
+    public abstract void gameEnded(final int[] endResult);
+
+    /** Called when the server or a problem closed our connection. */
+    public abstract void disconnected(final Exception cause);
+
+    public Table getTable(){
+        return this.table;
+    }
+
+    /** Connects and joins an existing table. */
+    public void join(final SelectorTransport transport,
+                     final SocketAddress address,
+                     final long tableId)
+        throws IOException
+    {
+        this.transport = transport;
+        this.connection = transport.connect(address,this);
+        this.connection.send
+            (GeneralProtocol.serialize_1_JOIN_TABLE_TO_PLAY(tableId,
+                                                            this.screenName));
+    }
+
+    /** Connects and asks for a new table. When it's created, we
+        join it.
+        @param query CREATE_..._TABLE message. */
+    public void create(final SelectorTransport transport,
+                       final SocketAddress address,
+                       final MessageBuffer query)
+        throws IOException
+    {
+        this.transport = transport;
+        this.connection = transport.connect(address,this);
+        this.connection.send(query);
+    }
+
+    public void close(){
+        if(this.connection!=null)
+            this.connection.close();
+    }
+
+    //Applies a move to the game. Returns false if it was invalid.
+    private boolean applyMove(final MessageBuffer move){
+        this.position++;
+        final int moveResult
+            = this.gameLogic.moveMade(move,this.endResult);
+
+        //Move was invalid:
+        if((moveResult&GameLogic.VALIDITY_MASK)!=GameLogic.VALID){
+            d("(moveResult&GameLogic.VALIDITY_MASK)!=GameLogic.VALID");
+            this.table.gameOn = false;
+            return false;
+        }
+
+        this.moveMade();
+
+        if((moveResult&GameLogic.CONTINUITY_MASK)==GameLogic.END){
+            this.table.gameOn = false;
+            this.gameEnded(this.endResult);
+        }
+        return true;
+    }
+
+    //Makes our moves as long as it's our turn. Server usually
+    //doesn't send our own moves back, so we apply them ourselves.
+    private boolean play(){
+        while(this.table.gameOn){
+            if(this.gameLogic instanceof AsyncGameLogic){
+                this.think();
+                return true;
+            }
+            final MessageBuffer move = this.gameLogic.nextMove();
+            if(move==null)
+                return true;
+            this.connection.send(GeneralProtocol.serialize_1_MAKE_MOVE(move));
+            if(this.gameLogic.serverEchoes(move))
+                return true;
+            if(!this.applyMove(move))
+                return false;
+        }
+        return true;
+    }
+
+    //Asks AsyncGameLogic for a move, unless it's already thinking
+    //about this position. The move is made on the transport thread.
+    private void think(){
+        if(this.thinkingPosition==this.position)
+            return;
+        final int thoughtPosition = this.position;
+        final AsyncGameLogic.MoveCallback callback
+            = new AsyncGameLogic.MoveCallback(){
+                    public void moveChosen(final MessageBuffer move){
+                        transport.invokeLater(new Runnable(){
+                                public void run(){
+                                    makeMove(thoughtPosition,move);
+                                }
+                            });
+                    }
+                    public void moveFailed(final Throwable t){
+                        transport.invokeLater(new Runnable(){
+                                public void run(){
+                                    e("Choosing move failed.",t);
+                                    close();
+                                }
+                            });
+                    }
+                };
+        if(((AsyncGameLogic)this.gameLogic).nextMove(callback))
+            this.thinkingPosition = thoughtPosition;
+    }
+
+    private void makeMove(final int thoughtPosition,
+                          final MessageBuffer move){
+        //Game went on or ended while thinking:
+        if(thoughtPosition!=this.position || !this.table.gameOn)
+            return;
+        this.thinkingPosition = -1;
+        this.connection.send(GeneralProtocol.serialize_1_MAKE_MOVE(move));
+        if(this.gameLogic.serverEchoes(move))
+            return;
+        if(this.applyMove(move))
+            this.play();
+    }
+
+    public void connectionClosed(final Exception cause){
+        this.table.gameOn = false;
+        //Drops the move being thought about:
+        this.position++;
+        this.disconnected(cause);
+    }
+
+    public boolean handle_1_TABLE_CREATED(final long id){
+        this.connection.send
+            (GeneralProtocol.serialize_1_JOIN_TABLE_TO_PLAY(id,
+                                                            this.screenName));
+        this.tableCreated(id);
+        return true;
+    }
+
+    public boolean handle_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID(){
+        d("Joining table failed: incorrect table id.");
+        return true;
+    }
+
+    public boolean handle_1_YOU_JOINED_TABLE(final byte tablePlayerId){
+        this.table.addMe(tablePlayerId,new TablePlayer(this.screenName));
+        return true;
+    }
+
+    public boolean handle_1_NEW_PLAYER_JOINED_TABLE(final String screenName,
+                                                    final byte tablePlayerId){
+        this.table.addPlayer(tablePlayerId,new TablePlayer(screenName));
+        return true;
+    }
+
+    public boolean handle_1_PLAYER_LEFT_TABLE(final byte tablePlayerId){
+        this.table.tablePlayerIdToTablePlayer.remove(tablePlayerId);
+        this.table.gameOn = false;
+        return true;
+    }
+
+    public boolean handle_1_SAID(final byte tablePlayerId,
+                                 final MessageBuffer text_UTF8){
+        return true;
+    }
+
+    public boolean handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE
+        (final Vector<Byte> turnGamePlayerToTablePlayerId,
+         final MessageBuffer initialMessage){
+
+        //Set table information:
+        this.table.turnGamePlayerToTablePlayerId
+            = turnGamePlayerToTablePlayerId;
+        for(int i=0;i<turnGamePlayerToTablePlayerId.size();i++){
+            final Byte b = turnGamePlayerToTablePlayerId.get(i);
+            if(b.equals(this.table.myTablePlayerId))
+                this.table.myTurnGamePlayer = (byte)i;
+        }
+        this.table.gameOn = true;
+        this.position++;
+
+        if(!this.gameLogic.initialize(this.table,initialMessage)){
+            this.table.gameOn = false;
+            return false;
+        }
+        return this.play();
+    }
+
+    public boolean handle_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE
+        (final Vector<Byte> turnGamePlayerToTablePlayerId){
+
+        return this.handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE
+            (turnGamePlayerToTablePlayerId,
+             null);
+    }
+
+    public boolean handle_1_MOVE_MADE(final MessageBuffer move){
+        return this.applyMove(move) && this.play();
+    }
+}
@@ -60,7 +60,7 @@ public abstract class JBoard extends JPanel{
         this.jTabbedPane = jTabbedPane;
     }
 
-    public abstract void sendMove(final Vector<Byte> move);
+    public abstract void sendMove(final MessageBuffer move);
 
     public abstract void d(final String message);
     public abstract void p(final String message);
@@ -140,18 +140,17 @@ public abstract class JBoard extends JPanel{
     //TODO: change boolean return to exception
     /** @param  initialMessage Can  be null  if no  initialMessage was
         sent by the server.*/
-    public abstract boolean initialize(final java.util.Vector<Byte> initialMessage);
+    public abstract boolean initialize(final MessageBuffer initialMessage);
 
-    //Bit mask for specifying whether the game shall continue or finish.
-    public static final int CONTINUITY_MASK = 0x01;
-    public static final int CONTINUE = 0x00;
-    public static final int END = 0x01;
+    //Same results as in headless game logic:
+    public static final int CONTINUITY_MASK = GameLogic.CONTINUITY_MASK;
+    public static final int CONTINUE = GameLogic.CONTINUE;
+    public static final int END = GameLogic.END;
 
-    //Bit mask for specifying whether the move sent was valid.
-    public static final int VALIDITY_MASK = 0x02;
-    public static final int VALID = 0x00;
-    public static final int INVALID = 0x02;
+    public static final int VALIDITY_MASK = GameLogic.VALIDITY_MASK;
+    public static final int VALID = GameLogic.VALID;
+    public static final int INVALID = GameLogic.INVALID;
 
-    public abstract int moveMade(final Vector<Byte> move,
+    public abstract int moveMade(final MessageBuffer move,
                                  final int[] endResult);
 }
@@ -40,6 +40,7 @@ import java.awt.image.*;
 import java.util.*;
 import java.awt.geom.*;
 import java.awt.font.*;
+import java.util.concurrent.*;
 
 public abstract class JCards
     extends JComponent
@@ -48,17 +49,55 @@ public abstract class JCards
     //Clip rectangle:
     private final Rectangle clipRectangle;
 
-    //Background:
+    //Background, possibly bigger than the component:
     private BufferedImage backgroundImage;
-
-    //Virtual image used for deciding whether mouse is over some
-    //card. When component is resized, cards are painted into this
-    //image, each with one color (no symbols, etc.). Each card has
-    //different color, according to its index in cardsAtHand. Later
-    //when mouse is moved over this component, we see, whether it's
-    //some cards color in this image. If so, it means mouse is over a
-    //card.
-    private BufferedImage virtualImage;
+    //Key (see backgroundKey) of the background we wait for, or -1:
+    private volatile long wantedBackground;
+
+    //Backgrounds drawn lately, shared by all JCards. Sizes are
+    //rounded up to BACKGROUND_BUCKET, so resizing by a few pixels
+    //reuses the same image. A full screen image takes megabytes,
+    //so only the current and the previous size are kept; each
+    //JCards holds on to its own anyway. Guarded by itself:
+    private static final int BACKGROUND_BUCKET = 64;
+    private static final int MAX_BACKGROUNDS = 2;
+    private static final Map<Long,BufferedImage> backgrounds
+        = new LinkedHashMap<Long,BufferedImage>(16,0.75f,true){
+                protected boolean removeEldestEntry
+                    (final Map.Entry<Long,BufferedImage> eldest){
+                    return size()>MAX_BACKGROUNDS;
+                }
+            };
+
+    //Backgrounds are drawn there, not to block event dispatch thread:
+    private static final ExecutorService backgroundExecutor
+        = Executors.newSingleThreadExecutor
+        (new ThreadFactory(){
+                public Thread newThread(final Runnable runnable){
+                    final Thread thread
+                        = new Thread(runnable,"JCards background");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    //Used for deciding whether mouse is over some card. Each time
+    //cards are painted, we remember their shapes in painting order,
+    //each with transform to component coordinates and virtual color
+    //(UNCLICKABLE for shapes which can't be clicked, but cover
+    //cards below them). Later when mouse is moved over this
+    //component, we look for the topmost shape containing the
+    //point. If it's a card, mouse is over it.
+    private AffineTransform[] hitTransforms;
+    private Shape[] hitShapes;
+    private int[] hitVirtualColors;
+    private int numberOfHits;
+    //False after a card was clicked, until cards are painted again,
+    //so the same card can't be clicked twice:
+    private boolean hitsValid;
+    //Inverse of transform of Graphics given to paintMe:
+    private final AffineTransform paintInverse;
+    private final Point2D.Float hitPoint;
 
     //Cards the player has at hand to play with.
     protected Vector<Hand> hands;
@@ -70,15 +109,54 @@ public abstract class JCards
     private int selected;
     protected static final int UNCLICKABLE = 127;
 
+    //Where each clickable card was painted last time, indexed by
+    //its virtual color, so that hovering repaints only the cards
+    //involved:
+    private final Rectangle[] cardBounds;
+    private final Rectangle dirtyRectangle;
+    private final float[] corners;
+
+    //Cards rendered once and then just copied, for each card width
+    //and device scale in use. Sprite of a card is at
+    //4*card+(highlight?1:0)+(everything?2:0). Cleared when the
+    //component is resized:
+    private float[] spriteWidths;
+    private float[] spriteScales;
+    private BufferedImage[][] sprites;
+    private int numberOfSpriteWidths;
+    private int spritesForWidth;
+    private int spritesForHeight;
+    //Sprites are bigger than cards by this on each side, so that
+    //antialiased border fits:
+    private static final int SPRITE_MARGIN = 2;
+
     protected JCards(){
         this.clipRectangle = new Rectangle();
         this.backgroundImage = null;
-        this.virtualImage = null;
+        this.wantedBackground = -1;
+        this.hitTransforms = new AffineTransform[32];
+        this.hitShapes = new Shape[32];
+        this.hitVirtualColors = new int[32];
+        this.numberOfHits = 0;
+        this.hitsValid = false;
+        this.paintInverse = new AffineTransform();
+        this.hitPoint = new Point2D.Float();
 
         this.hands = new Vector<Hand>();
         this.cardsAtTable = new Vector<CardAtTable>();
         this.selected = UNCLICKABLE;
 
+        this.cardBounds = new Rectangle[UNCLICKABLE];
+        for(int i=0; i<UNCLICKABLE; i++)
+            this.cardBounds[i] = new Rectangle();
+        this.dirtyRectangle = new Rectangle();
+        this.corners = new float[8];
+
+        this.spriteWidths = new float[4];
+        this.spriteScales = new float[4];
+        this.sprites = new BufferedImage[4][];
+        this.numberOfSpriteWidths = 0;
+
         this.setBorder(BorderFactory.createEmptyBorder());
         this.setOpaque(true);
 
@@ -179,22 +257,16 @@ public abstract class JCards
     }
 
     public void mouseMoved(final MouseEvent e){
-        final int x = e.getX();
-        final int y = e.getY();
-        final BufferedImage v = this.virtualImage;
-
-        if(v==null || x>=v.getWidth() || y>=v.getHeight())
+        if(!hitsValid)
             return;
 
-        //Get the blue component of the pixel:
-        final int virtualColor = 0x00FF & v.getRGB(x,y);
+        final int virtualColor = this.hitTest(e.getX(),e.getY());
 
         if(virtualColor != this.selected){
+            final int previous = this.selected;
             this.selected = virtualColor;
-            //TODO: Some fine-grained "repaint only" mechanism, not to
-            //repaint everything each time, especially when only a
-            //card is hovered.
-            this.repaint();
+            //Only the card losing and the card gaining highlight change:
+            this.repaintCards(previous,virtualColor);
             //System.out.println("("+e.getX()+","+e.getY()+"): "+virtualColor);
         }
     }
@@ -203,15 +275,10 @@ public abstract class JCards
     }
 
     public void mousePressed(final MouseEvent e){
-        final int x = e.getX();
-        final int y = e.getY();
-        final BufferedImage v = this.virtualImage;
-
-        if(v==null || x>=v.getWidth() || y>=v.getHeight())
+        if(!hitsValid)
             return;
 
-        //Get the blue component of the pixel:
-        final int virtualColor = 0x0000FF & v.getRGB(x,y);
+        final int virtualColor = this.hitTest(e.getX(),e.getY());
 
         if(virtualColor == UNCLICKABLE)
             return;
@@ -220,8 +287,10 @@ public abstract class JCards
 
         this.cardClicked(virtualColor);
 
-        this.virtualImage = null;
-        this.repaint();
+        //If the click changed cards' layout, the owner repaints
+        //everything. Otherwise only the highlight goes away:
+        this.hitsValid = false;
+        this.repaintCards(virtualColor,UNCLICKABLE);
         //System.out.println("("+e.getX()+","+e.getY()+"): "+virtualColor);
     }
 
@@ -236,16 +305,161 @@ public abstract class JCards
     public void mouseExited(final MouseEvent e){
     }
 
-    public void initializeBackgroundImage(){
+    /** Repaints the union of the areas where the two cards were
+        painted. UNCLICKABLE stands for no card. */
+    private void repaintCards(final int firstVirtualColor,
+                              final int secondVirtualColor){
+        dirtyRectangle.setBounds(0,0,0,0);
+        if(firstVirtualColor<UNCLICKABLE)
+            dirtyRectangle.setBounds(cardBounds[firstVirtualColor]);
+        if(secondVirtualColor<UNCLICKABLE){
+            if(dirtyRectangle.isEmpty())
+                dirtyRectangle.setBounds(cardBounds[secondVirtualColor]);
+            else
+                dirtyRectangle.add(cardBounds[secondVirtualColor]);
+        }
+        if(!dirtyRectangle.isEmpty())
+            this.repaint(dirtyRectangle);
+    }
 
-        int w=this.getWidth();
-        int h=this.getHeight();
+    /** Virtual color of the topmost card painted at (x,y), or
+        UNCLICKABLE. */
+    private int hitTest(final int x, final int y){
+        for(int i=numberOfHits-1; i>=0; i--){
+            hitPoint.setLocation(x,y);
+            try{
+                hitTransforms[i].inverseTransform(hitPoint,hitPoint);
+            }catch(final NoninvertibleTransformException e){
+                continue;
+            }
+            if(hitShapes[i].contains(hitPoint))
+                return hitVirtualColors[i];
+        }
+        return UNCLICKABLE;
+    }
+
+    //Remembers the shape just painted using g, for hitTest and
+    //repaintCards:
+    private void addHit(final Graphics2D g,
+                        final Shape shape,
+                        final int virtualColor){
+        if(numberOfHits==hitShapes.length){
+            hitTransforms = Arrays.copyOf(hitTransforms,2*numberOfHits);
+            hitShapes = Arrays.copyOf(hitShapes,2*numberOfHits);
+            hitVirtualColors = Arrays.copyOf(hitVirtualColors,2*numberOfHits);
+        }
+        if(hitTransforms[numberOfHits]==null)
+            hitTransforms[numberOfHits] = new AffineTransform();
+        final AffineTransform transform = hitTransforms[numberOfHits];
+        transform.setTransform(paintInverse);
+        transform.concatenate(g.getTransform());
+        hitShapes[numberOfHits] = shape;
+        hitVirtualColors[numberOfHits] = virtualColor;
+        numberOfHits++;
+
+        if(virtualColor<0 || virtualColor>=UNCLICKABLE)
+            return;
+        final Rectangle2D shapeBounds = shape.getBounds2D();
+        final float x0 = (float)shapeBounds.getMinX();
+        final float y0 = (float)shapeBounds.getMinY();
+        final float x1 = (float)shapeBounds.getMaxX();
+        final float y1 = (float)shapeBounds.getMaxY();
+        corners[0] = x0; corners[1] = y0;
+        corners[2] = x1; corners[3] = y0;
+        corners[4] = x1; corners[5] = y1;
+        corners[6] = x0; corners[7] = y1;
+        transform.transform(corners,0,corners,0,4);
+        float minX = corners[0], maxX = corners[0];
+        float minY = corners[1], maxY = corners[1];
+        for(int i=2; i<8; i+=2){
+            minX = Math.min(minX,corners[i]);
+            maxX = Math.max(maxX,corners[i]);
+            minY = Math.min(minY,corners[i+1]);
+            maxY = Math.max(maxY,corners[i+1]);
+        }
+        //Antialiased border may go a bit outside:
+        final int x = (int)Math.floor(minX)-SPRITE_MARGIN;
+        final int y = (int)Math.floor(minY)-SPRITE_MARGIN;
+        cardBounds[virtualColor].setBounds
+            (x,y,
+             (int)Math.ceil(maxX)+SPRITE_MARGIN-x,
+             (int)Math.ceil(maxY)+SPRITE_MARGIN-y);
+    }
+
+    private static int backgroundBucket(final int size){
+        return BACKGROUND_BUCKET*((Math.max(size,10)+BACKGROUND_BUCKET-1)
+                                  /BACKGROUND_BUCKET);
+    }
+
+    private static long backgroundKey(final int w, final int h){
+        return (((long)backgroundBucket(w))<<32) | backgroundBucket(h);
+    }
+
+    //Background for the key, from cache or drawn and cached:
+    private static BufferedImage getBackground(final long key){
+        synchronized(backgrounds){
+            final BufferedImage cached = backgrounds.get(key);
+            if(cached!=null)
+                return cached;
+        }
+        final BufferedImage image
+            = createBackgroundImage((int)(key>>>32),(int)key);
+        synchronized(backgrounds){
+            backgrounds.put(key,image);
+        }
+        return image;
+    }
+
+    //Makes sure the background fits the component. If it's not in
+    //the cache, it's drawn in background and until then the old one
+    //is used, stretched:
+    private void updateBackgroundImage(final int width, final int height){
+        final long key = backgroundKey(width,height);
+        if(backgroundImage!=null
+           && backgroundKey(backgroundImage.getWidth(),
+                            backgroundImage.getHeight())==key)
+            return;
+
+        BufferedImage cached;
+        synchronized(backgrounds){
+            cached = backgrounds.get(key);
+        }
+        if(cached!=null || backgroundImage==null){
+            //Nothing to show meanwhile, so we draw it now:
+            this.backgroundImage = (cached!=null ? cached : getBackground(key));
+            this.wantedBackground = -1;
+            return;
+        }
+
+        if(wantedBackground==key)
+            return;
+        wantedBackground = key;
+        final JCards me = this;
+        backgroundExecutor.execute(new Runnable(){
+                public void run(){
+                    //Component was resized again before we started:
+                    if(me.wantedBackground!=key)
+                        return;
+                    final BufferedImage image = getBackground(key);
+                    SwingUtilities.invokeLater(new Runnable(){
+                            public void run(){
+                                if(me.wantedBackground!=key)
+                                    return;
+                                me.backgroundImage = image;
+                                me.wantedBackground = -1;
+                                me.repaint();
+                            }
+                        });
+                }
+            });
+    }
 
-        if(w<10) w=10;
-        if(h<10) h=10;
+    private static BufferedImage createBackgroundImage(final int w,
+                                                       final int h){
 
-        this.backgroundImage
-            =new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB);
+        //Opaque from the start, curves are drawn on black:
+        final BufferedImage image
+            =new BufferedImage(w,h,BufferedImage.TYPE_INT_RGB);
 
         //final Random seeds = new Random(13);
 
@@ -255,7 +469,7 @@ public abstract class JCards
         final int dx=(w<50?10:w/30);
         final int dy=(h<50?10:h/30);
 
-        final Graphics2D g =this.backgroundImage.createGraphics();
+        final Graphics2D g = image.createGraphics();
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                            RenderingHints.VALUE_ANTIALIAS_ON);
         g.setStroke(new BasicStroke(dx));
@@ -270,32 +484,8 @@ public abstract class JCards
         for(;startx<=w+dx;startx+=(dx/2)){
             drawCurve(g,w,startx,starty,dx,dy,r);
         }
-
-        //Eliminate Alpha component, so the image is completely opaque:
-        for(int i=0; i<w;i++)
-            for(int j=0; j<h; j++)
-                backgroundImage.setRGB
-                    (i,j, backgroundImage.getRGB(i,j) | 0xFF000000);
-    }
-
-    public void initializeVirtualImage(){
-
-        int w=this.getWidth();
-        int h=this.getHeight();
-
-        if(w<10) w=10;
-        if(h<10) h=10;
-
-        this.virtualImage
-            =new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB);
-
-        final Graphics2D vg = this.virtualImage.createGraphics();
-        vg.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                            RenderingHints.VALUE_ANTIALIAS_OFF);
-
-        vg.setColor(new Color(0,0,UNCLICKABLE));
-        vg.fillRect(0,0,w,h);
-        //System.out.println("Filled "+w+"x"+h+" using "+color);
+        g.dispose();
+        return image;
     }
 
     private static void drawCurve(final Graphics2D g,
@@ -355,6 +545,79 @@ public abstract class JCards
         //         +(duration/1000000)+"ms.");
     }
 
+    /** Like drawCard, but copies the card from a sprite, rendering
+        it first if it's not there yet. */
+    private void blitCard(final byte card,
+                          final Graphics2D g,
+                          final RoundRectangle2D.Float shape,
+                          final boolean highlight,
+                          final boolean everything,
+                          final boolean upsidedown){
+
+        final AffineTransform originalTransform = g.getTransform();
+        //Device pixels per unit, e.g. 2 on a HiDPI display. Cards
+        //at hand are rotated, so it's taken from the determinant,
+        //rounded to eighths to ignore rounding errors:
+        final float scale
+            = Math.max(1,Math.round(8*Math.sqrt(Math.abs(originalTransform.getDeterminant()))))/8f;
+
+        final float shapeWidth = (float)shape.getWidth();
+        int w = 0;
+        while(w<numberOfSpriteWidths
+              && (spriteWidths[w]!=shapeWidth || spriteScales[w]!=scale))
+            w++;
+        if(w==numberOfSpriteWidths){
+            if(w==spriteWidths.length){
+                spriteWidths = Arrays.copyOf(spriteWidths,2*w);
+                spriteScales = Arrays.copyOf(spriteScales,2*w);
+                sprites = Arrays.copyOf(sprites,2*w);
+            }
+            spriteWidths[w] = shapeWidth;
+            spriteScales[w] = scale;
+            sprites[w] = new BufferedImage[4*128];
+            numberOfSpriteWidths++;
+        }
+
+        //Sprite is rendered in device pixels, so it's as sharp as a
+        //card drawn directly:
+        final int index = 4*card + (highlight?1:0) + (everything?2:0);
+        BufferedImage sprite = sprites[w][index];
+        if(sprite==null){
+            sprite = new BufferedImage
+                ((int)Math.ceil(scale*(shapeWidth+2*SPRITE_MARGIN)),
+                 (int)Math.ceil(scale*(shape.getHeight()+2*SPRITE_MARGIN)),
+                 BufferedImage.TYPE_INT_ARGB_PRE);
+            final Graphics2D sg = sprite.createGraphics();
+            sg.setRenderingHints(g.getRenderingHints());
+            sg.scale(scale,scale);
+            sg.translate(SPRITE_MARGIN,SPRITE_MARGIN);
+            drawCard(card,sg,shape,highlight,everything,false);
+            sg.dispose();
+            sprites[w][index] = sprite;
+        }
+
+        //Card shape is symmetric, so upside--down card is its sprite
+        //rotated:
+        if(upsidedown && (everything || card==Card.UNKNOWN))
+            g.rotate(Math.PI,shape.getCenterX(),shape.getCenterY());
+        g.translate(-SPRITE_MARGIN,-SPRITE_MARGIN);
+        g.scale(1/scale,1/scale);
+        g.drawImage(sprite,0,0,null);
+        g.setTransform(originalTransform);
+    }
+
+    //Paints a fully visible card from its sprite or from scratch,
+    //for JCardsBenchmark to compare them:
+    void paintCard(final byte card,
+                   final Graphics2D g,
+                   final RoundRectangle2D.Float shape,
+                   final boolean fromSprite){
+        if(fromSprite)
+            blitCard(card,g,shape,false,true,false);
+        else
+            drawCard(card,g,shape,false,true,false);
+    }
+
     /** @param everything When a card is fully visible, set everything
         to true. If it's hidden by another card at hand, set it to
         false.
@@ -757,14 +1020,7 @@ public abstract class JCards
              cardAtTableWidth,cardAtTableHeight,
              0.15f*cardAtTableWidth,0.15f*cardAtTableWidth);
 
-        //Is virtualImage the wrong size?
-        if(this.virtualImage==null
-           ||this.virtualImage.getWidth()<width
-           ||this.virtualImage.getHeight()<height){
-
-            this.initializeVirtualImage();
-            this.initializeBackgroundImage();
-        }
+        this.updateBackgroundImage(width,height);
 
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                            RenderingHints.VALUE_ANTIALIAS_ON);
@@ -772,35 +1028,55 @@ public abstract class JCards
                            RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                            RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        //Card sprites are copied rotated:
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                           RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        //Card sizes depend on component size:
+        if(width!=spritesForWidth || height!=spritesForHeight){
+            for(int w=0; w<numberOfSpriteWidths; w++)
+                sprites[w] = null;
+            numberOfSpriteWidths = 0;
+            spritesForWidth = width;
+            spritesForHeight = height;
+        }
 
-        final Graphics2D vg = this.virtualImage.createGraphics();
-
-        vg.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                            RenderingHints.VALUE_ANTIALIAS_OFF);
-        vg.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
-                            RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
-        vg.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
-                            RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        //Cards might have moved since last time, even if only a part
+        //is repainted now, so we collect their shapes again:
+        this.numberOfHits = 0;
+        try{
+            this.paintInverse.setTransform(g.getTransform());
+            this.paintInverse.invert();
+        }catch(final NoninvertibleTransformException e){
+            this.paintInverse.setToIdentity();
+        }
 
         //GeneralPath heart=svg2path(S.heart);
 
         g.getClipBounds(clipRectangle);
 
-        //Paste background:
-        g.drawImage(this.backgroundImage.getSubimage(clipRectangle.x,
-                                                     clipRectangle.y,
-                                                     clipRectangle.width,
-                                                     clipRectangle.height),
-                    clipRectangle.x,
-                    clipRectangle.y,
-                    null);
+        //Paste background. Until the one for the new size is drawn,
+        //the old one is stretched:
+        final BufferedImage background = this.backgroundImage;
+        if(background.getWidth()>=width && background.getHeight()>=height)
+            g.drawImage(background,
+                        clipRectangle.x,
+                        clipRectangle.y,
+                        clipRectangle.x+clipRectangle.width,
+                        clipRectangle.y+clipRectangle.height,
+                        clipRectangle.x,
+                        clipRectangle.y,
+                        clipRectangle.x+clipRectangle.width,
+                        clipRectangle.y+clipRectangle.height,
+                        null);
+        else
+            g.drawImage(background,0,0,width,height,null);
 
         //g.setRenderingHint(RenderingHints.KEY_RENDERING,
         //		   RenderingHints.VALUE_RENDER_QUALITY);
         
         // Get the current transform
         final AffineTransform originalTransform = g.getTransform();
-        final AffineTransform originalVirtualTransform = vg.getTransform();
         
         final float cardsAtTableStartX
             = 0.5f*width - 0.5f*cardAtTableWidth;
@@ -808,13 +1084,11 @@ public abstract class JCards
             = 0.5f*height - 0.5f*cardAtTableHeight;
 
         g.translate(cardsAtTableStartX,cardsAtTableStartY);
-        vg.translate(cardsAtTableStartX,cardsAtTableStartY);
 
-        paintCardsAtTable(g,vg,cardAtTableShape);
+        paintCardsAtTable(g,cardAtTableShape);
 
         // Restore original transform
         g.setTransform(originalTransform);
-        vg.setTransform(originalVirtualTransform);
         
         final Font font = new Font("Lucida Sans",Font.BOLD,10)
             .deriveFont(0.025f*height);
@@ -822,23 +1096,21 @@ public abstract class JCards
         for(Hand hand : this.hands){
 
             g.translate(hand.x*width,hand.y*height);
-            vg.translate(hand.x*width,hand.y*height);
 
-            paintHand(g,vg,hand);
+            paintHand(g,hand);
 
             // Restore original transform
             g.setTransform(originalTransform);
-            vg.setTransform(originalVirtualTransform);
         }
 
+        this.hitsValid = true;
+
     }
 
     private void paintHand(final Graphics2D g,
-                           final Graphics2D vg,
                            final Hand hand){
 
         final AffineTransform originalTransform = g.getTransform();
-        final AffineTransform originalVirtualTransform = vg.getTransform();
 
         final float cardAtHandWidth = hand.cardWidth*this.getWidth();
         final float cardAtHandHeight = 1.5f * cardAtHandWidth;
@@ -868,36 +1140,30 @@ public abstract class JCards
 
         g.rotate(-singleRotation*0.5f*(numberOfCardsAtHand-1),0,
                  rotationRadius);
-        vg.rotate(-singleRotation*0.5f*(numberOfCardsAtHand-1),0,
-                  rotationRadius);
 
         for(int i=0;i<numberOfCardsAtHand;i++){
 
             final HandCard handCard = hand.cards.get(i);
             final byte card = handCard.card;
 
-            drawCard(card,g,shape,
+            blitCard(card,g,shape,
                      (selected!=UNCLICKABLE) && (selected == handCard.virtualColor),
                      i==numberOfCardsAtHand-1,
                      handCard.upsidedown);
 
-            vg.setColor(new Color(0,0,handCard.virtualColor));
-            vg.fill(shape);
+            addHit(g,shape,handCard.virtualColor);
 
             //We need more rotation for 10:
             if((card & Card.VALUE_MASK)==Card.TEN){
                 g.rotate(1.5f*singleRotation,0,rotationRadius);
-                vg.rotate(1.5f*singleRotation,0,rotationRadius);
             }else{
                 g.rotate(singleRotation,0,rotationRadius);
-                vg.rotate(singleRotation,0,rotationRadius);
             }
         }
         
         if(hand.hasArrowAbove || hand.hasArrowBelow){
             // Restore original transform
             g.setTransform(originalTransform);
-            vg.setTransform(originalVirtualTransform);
 
             final Polygon downArrow = new Polygon();
             final float unit = 0.01f*this.getMinimumDimension();
@@ -918,8 +1184,7 @@ public abstract class JCards
                 g.setColor(Color.YELLOW);
                 g.draw(downArrow);
 
-                vg.setColor(new Color(0,0,UNCLICKABLE));
-                vg.fill(downArrow);
+                addHit(g,downArrow,UNCLICKABLE);
             }
             if(hand.hasArrowBelow){
                 g.translate(0f,1.3f*cardAtHandHeight);
@@ -930,18 +1195,17 @@ public abstract class JCards
                 g.setColor(Color.YELLOW);
                 g.draw(downArrow);
 
-                vg.setColor(new Color(0,0,UNCLICKABLE));
-                vg.fill(downArrow);
+                addHit(g,downArrow,UNCLICKABLE);
 
             }
         }
     }
 
-    /** In most card games cards at table are not clickable, so vg
-     * argument will be unused.
+    /** In most card games cards at table are not clickable, but
+     * they still cover what's below them when looking for the card
+     * under the mouse.
      */
     private void paintCardsAtTable(final Graphics2D g,
-                                   final Graphics2D vg,
                                    final RoundRectangle2D.Float shape){
 
         final float shapeW = (float)shape.getWidth();
@@ -957,27 +1221,22 @@ public abstract class JCards
 
             // Get the current transform
             final AffineTransform originalTransform = g.getTransform();
-            final AffineTransform originalVirtualTransform = vg.getTransform();
-
+    
             g.translate(cardAtTable.x*shapeW,cardAtTable.y*shapeH);
-            vg.translate(cardAtTable.x*shapeW,cardAtTable.y*shapeH);
 
 
             g.rotate(cardAtTable.theta,shapeCenterX,shapeCenterY);
-            vg.rotate(cardAtTable.theta,shapeCenterX,shapeCenterY);
 
-            drawCard(cardAtTable.card,g,shape,
+            blitCard(cardAtTable.card,g,shape,
                      (cardAtTable.virtualColor!=UNCLICKABLE)
                      && (selected == cardAtTable.virtualColor),
                      true,
                      false);
 
-            vg.setColor(new Color(0,0,cardAtTable.virtualColor));
-            vg.fill(shape);
+            addHit(g,shape,cardAtTable.virtualColor);
 
             // Restore original transform
             g.setTransform(originalTransform);
-            vg.setTransform(originalVirtualTransform);
         }
     }
 
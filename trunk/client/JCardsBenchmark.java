@@ -0,0 +1,100 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+
+/** Measures how long JCards takes to paint a card, drawing it from
+ * scratch and copying its cached sprite.
+ *
+ * Usage: JCardsBenchmark [cards] [iterations]
+ * Run with -Djava.awt.headless=true if there's no display.
+ */
+public class JCardsBenchmark{
+
+    //Milliseconds per card:
+    private static double paint(final JCards jCards,
+                                final Graphics2D g,
+                                final RoundRectangle2D.Float shape,
+                                final int cards,
+                                final int iterations,
+                                final boolean fromSprite){
+        final long before = System.nanoTime();
+        for(int i=0; i<iterations; i++)
+            for(int c=0; c<cards; c++){
+                final AffineTransform originalTransform = g.getTransform();
+                g.translate(10+(c%10)*70,10+(c/10%5)*110);
+                jCards.paintCard((byte)((c%13)|(16*((c/13)%4))),
+                                 g,shape,fromSprite);
+                g.setTransform(originalTransform);
+            }
+        return (System.nanoTime()-before)/1e6/iterations/cards;
+    }
+
+    public static void main(final String[] arguments){
+        try{
+            final int cards
+                = (arguments.length>0 ? Integer.parseInt(arguments[0]) : 10);
+            final int iterations
+                = (arguments.length>1 ? Integer.parseInt(arguments[1]) : 200);
+
+            final JCards jCards = new JCards(){
+                    public void cardClicked(final int virtualColor){}
+                };
+            final BufferedImage image
+                = new BufferedImage(800,600,BufferedImage.TYPE_INT_RGB);
+            final Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
+            final RoundRectangle2D.Float shape
+                = new RoundRectangle2D.Float(0,0,60,100,9,9);
+
+            //First round warms up and fills sprites:
+            paint(jCards,g,shape,cards,iterations/10+1,false);
+            paint(jCards,g,shape,cards,iterations/10+1,true);
+            final double drawn = paint(jCards,g,shape,cards,iterations,false);
+            final double copied = paint(jCards,g,shape,cards,iterations,true);
+            g.dispose();
+
+            System.out.printf("drawing cards: %.3f ms per card%n",drawn);
+            System.out.printf("copying sprites: %.3f ms per card%n",copied);
+        }catch(final Exception e){
+            System.err.println("Exception: "+e);
+            System.err.println("Stack trace:");
+            e.printStackTrace();
+        }
+    }
+}
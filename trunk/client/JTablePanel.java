@@ -53,6 +53,7 @@ public class JTablePanel
     public final Socket socket;
     public final Sender sender;
     public final Receiver receiver;
+    private boolean tablePlayerListChanged;
 
     public JTablePanel(final String serverHost,
                        final int serverPort,
@@ -87,7 +88,7 @@ public class JTablePanel
                         text = new byte[0];
                     }
 
-                    sender.send(GeneralProtocol.serialize_1_SAY(Message.toVector(text)));
+                    sender.send(GeneralProtocol.serialize_1_SAY(new MessageBuffer(text)));
                 }
             };
 
@@ -124,7 +125,7 @@ public class JTablePanel
             = new JThousandBoard((byte)3,this.table,
                                  this,
                                  this.jSmallTabbedPane){
-                    public void sendMove(final Vector<Byte> m){
+                    public void sendMove(final MessageBuffer m){
                         sender.send(GeneralProtocol.serialize_1_MAKE_MOVE(m));
                     }
                     public void p(final String s){me.p(s);}
@@ -173,6 +174,7 @@ public class JTablePanel
         this.receiver = new Receiver(socket,this,screenName){
                 public void d(final String s){me.d(s);}
                 public void e(final String s,final Throwable t){me.e(s,t);}
+                public void batchHandled(){me.batchHandled();}
             };
 
         this.sender.send
@@ -223,6 +225,22 @@ public class JTablePanel
                               "Error description");
     }
 
+    //Table player list is redrawn once per batch of messages. Our
+    //own moves don't come in a batch, so then it's redrawn at once:
+    private void tablePlayerListChanged(){
+        if(this.receiver!=null && this.receiver.isHandlingBatch())
+            this.tablePlayerListChanged = true;
+        else
+            this.redrawTablePlayerList();
+    }
+
+    private void batchHandled(){
+        if(this.tablePlayerListChanged){
+            this.tablePlayerListChanged = false;
+            this.redrawTablePlayerList();
+        }
+    }
+
     private void redrawTablePlayerList(){
 
         final JPanel panel = makeTablePlayerListPanel(this.table);
@@ -321,7 +339,7 @@ public class JTablePanel
     public boolean handle_1_YOU_JOINED_TABLE(final byte tablePlayerId){
         final TablePlayer player = new TablePlayer("Me");
         this.table.addMe(tablePlayerId,player);
-        redrawTablePlayerList();
+        tablePlayerListChanged();
         this.jChatPanel.appendLine("I joined table.");
         return true;
     }
@@ -330,7 +348,7 @@ public class JTablePanel
                                                     final byte tablePlayerId){
         final TablePlayer player = new TablePlayer(screenName);
         this.table.addPlayer(tablePlayerId,player);
-        redrawTablePlayerList();
+        tablePlayerListChanged();
         this.jChatPanel.appendLine(""+screenName+" joined table.");
         return true;
     }
@@ -339,13 +357,13 @@ public class JTablePanel
         final TablePlayer leaver
             = this.table.tablePlayerIdToTablePlayer.remove(tablePlayerId);
         this.table.gameOn=false;
-        redrawTablePlayerList();
+        tablePlayerListChanged();
         this.jChatPanel.appendLine(""+leaver+" left table.");
         return true;
     }
 
     public boolean handle_1_SAID(final byte tablePlayerId,
-                                 final Vector<Byte> text_UTF8){
+                                 final MessageBuffer text_UTF8){
         final TablePlayer tablePlayer
             = this.table.tablePlayerIdToTablePlayer.get(tablePlayerId);
         if(tablePlayer==null){
@@ -354,7 +372,9 @@ public class JTablePanel
         }
         try{
             this.jChatPanel.appendLine(""+tablePlayer.getScreenName()+": "
-                                       +new String(Message.toArray(text_UTF8),
+                                       +new String(text_UTF8.array(),
+                                                   text_UTF8.arrayOffset(),
+                                                   text_UTF8.size(),
                                                    "UTF8"));
         }catch(final java.io.UnsupportedEncodingException e){
             e("Couldn't understand chat text.",e);
@@ -365,7 +385,7 @@ public class JTablePanel
 
     public boolean handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE
         (final Vector<Byte> turnGamePlayerToTablePlayerId,
-         final Vector<Byte> initialMessage){
+         final MessageBuffer initialMessage){
 
         //Set table information:
         this.table.turnGamePlayerToTablePlayerId
@@ -381,7 +401,7 @@ public class JTablePanel
             = this.jBoard.initialize(initialMessage);
         if(initializationResult){
             this.jChatPanel.appendLine("Game has started!");
-            this.redrawTablePlayerList();
+            this.tablePlayerListChanged();
             return true;
         }else{
             this.table.gameOn=false;
@@ -397,7 +417,7 @@ public class JTablePanel
              null);
     }
 
-    public boolean handle_1_MOVE_MADE(final Vector<Byte> move){
+    public boolean handle_1_MOVE_MADE(final MessageBuffer move){
 
         final int[] endResult = new int[jBoard.getNumberOfPlayers()];
         int moveResult = this.jBoard.moveMade(move,
@@ -406,19 +426,19 @@ public class JTablePanel
         if((moveResult&JBoard.VALIDITY_MASK)!=JBoard.VALID){
             d("(moveResult&JBoard.VALIDITY_MASK)!=JBoard.VALID");
             this.table.gameOn=false;
-            this.redrawTablePlayerList();
+            this.tablePlayerListChanged();
             return false;
         }
 
         //Continue the game.
         if((moveResult&JBoard.CONTINUITY_MASK)==JBoard.CONTINUE){
-            this.redrawTablePlayerList();
+            this.tablePlayerListChanged();
             return true;
         }
 
         //End the game.
         this.table.gameOn=false;
-        this.redrawTablePlayerList();
+        this.tablePlayerListChanged();
         
         this.jChatPanel.appendLine("Game over.");
 
@@ -45,18 +45,6 @@ import javax.swing.table.*;
 public abstract class JThousandBoard
     extends JBoard{
     
-    private static enum Stage
-    {
-      BIDDING,
-      SELECTING_FIRST,
-      SELECTING_SECOND,
-      CONTRACTING,
-      PLAYING_FIRST,
-      PLAYING_SECOND,
-      PLAYING_THIRD,
-      ENDED
-    };
-
     private static byte[] THOUSAND_SHIFT_TO_CARD = {
         Card.NINE|Card.SPADE,
         Card.JACK|Card.SPADE,
@@ -84,26 +72,12 @@ public abstract class JThousandBoard
         Card.ACE|Card.HEART
     };
 
-    private Stage stage;
-
-    private byte startsBidding;
-
-    private byte biddingWinner;
-
-    private ThousandCardSet must;
-    private final ThousandCardSet[] sets;
+    //Game state, without GUI:
+    private final ThousandGame game;
 
-    private final byte[] bids10;
-    private byte minimumNextBid10;
-
-    private final B trumpShift;
-    private byte firstShift;
-    private byte secondShift;
-    private byte thirdShift;
-
-    private final S[] smallPoints;
-    private final int[] bigPoints10;
-    private final Vector<Vector<Integer>> savedPoints;
+    private final ScoreHistory scoreHistory;
+    //Row being added to scoreHistory:
+    private final int[] scoreRow;
 
     //GUI stuff:
     private final JCards jCards;
@@ -126,16 +100,9 @@ public abstract class JThousandBoard
               table,
               moveListener,
               jTabbedPane);
-        this.must = new ThousandCardSet();
-        this.sets = new ThousandCardSet[]{new ThousandCardSet(),
-                                          new ThousandCardSet(),
-                                          new ThousandCardSet()};
-        this.bids10 = new byte[]{0,0,0};
-        this.trumpShift = new B();
-        this.smallPoints = new S[]{new S(),new S(),new S()};
-        this.bigPoints10 = new int[]{0,0,0};
-        this.savedPoints = new Vector<Vector<Integer>>();
-
+        this.game = new ThousandGame();
+        this.scoreHistory = new ScoreHistory(3);
+        this.scoreRow = new int[3];
         final JThousandBoard me = this;
 
         this.jCards = new JCards(){
@@ -174,20 +141,6 @@ public abstract class JThousandBoard
         this.pointsTable = null;
     }
 
-    private String makeStateString(){
-        return "stage="+stage
-            + " startsBidding="+(int)startsBidding
-            + " biddingWinner="+(int)biddingWinner
-            + " bids10={"+bids10[0]+"," +bids10[1]+"," +bids10[2]+"}"
-            + " minimumNextBid10="+(int)minimumNextBid10
-            + " trumpShift="+(int)trumpShift.value
-            + " firstShift="+(int)firstShift
-            + " secondShift="+(int)secondShift
-            + " thirdShift="+(int)thirdShift
-            + " smallPoints={"+smallPoints[0]+"," +smallPoints[1]+"," +smallPoints[2]+"}"
-            + " bigPoints10={"+bigPoints10[0]+"," +bigPoints10[1]+"," +bigPoints10[2]+"}";
-    }
-
     private void addPointsTableRow(){
         if(pointsTableModel==null){
             this.pointsTableModel
@@ -195,10 +148,15 @@ public abstract class JThousandBoard
                         public String getColumnName(final int c) {
                             return table.getPlayer(c).getScreenName();
                         }
-                        public int getRowCount() { return savedPoints.size(); }
+                        public int getRowCount() {
+                            return scoreHistory.getNumberOfRows();
+                        }
                         public int getColumnCount() { return 3; }
+                        public Class<?> getColumnClass(final int c) {
+                            return Integer.class;
+                        }
                         public Object getValueAt(final int r, final int c) {
-                            return savedPoints.get(r).get(c);
+                            return scoreHistory.get(r,c);
                         }
                         //public boolean isCellEditable(int row, int col){return false;}
                         //public void setValueAt(Object value, int row, int col){}
@@ -211,75 +169,27 @@ public abstract class JThousandBoard
             final int index = this.jTabbedPane.getTabCount()-1;
             this.jTabbedPane.setMnemonicAt(index, KeyEvent.VK_S);
         }
-        final Vector<Integer> row = new Vector<Integer>();
         for(byte p=0;p<3;p++)
-            row.add(10*bigPoints10[p]);
-        final int temp = savedPoints.size();
-        this.savedPoints.add(row);
-        this.pointsTableModel.fireTableRowsInserted(temp,temp);
-    }
-
-    private void deal(){
-        must.setEmpty();
-        sets[0].setEmpty();
-        sets[1].setEmpty();
-        sets[2].setEmpty();
-
-        bids10[turn]=-1;
-        bids10[getPreviousPlayer()]=10;
-        bids10[getNextPlayer()]=-1;
-        d("bids10: {"+bids10[0]+"," +bids10[1]+"," +bids10[2]+"}");
-
-        minimumNextBid10=11;
-
-        trumpShift.value = ThousandProtocol.NO_TRUMP_SHIFT;
-
-        smallPoints[0].value=0;
-        smallPoints[1].value=0;
-        smallPoints[2].value=0;
-    }
-
-    private byte maxBid10()
-    {
-        byte result = 12;
-        final ThousandCardSet set = sets[turn];
-        //TODO: precompute sets and check intersection.
-        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
-                             +ThousandProtocol.HEART_SHIFT)
-           && set.containsShift(ThousandProtocol.KING_SHIFT
-                                +ThousandProtocol.HEART_SHIFT))
-            result+=10;
-        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
-                             +ThousandProtocol.DIAMOND_SHIFT)
-           && set.containsShift(ThousandProtocol.KING_SHIFT
-                                +ThousandProtocol.DIAMOND_SHIFT))
-            result+=8;
-        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
-                             +ThousandProtocol.CLUB_SHIFT)
-           && set.containsShift(ThousandProtocol.KING_SHIFT
-                                +ThousandProtocol.CLUB_SHIFT))
-            result+=6;
-        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
-                             +ThousandProtocol.SPADE_SHIFT)
-           && set.containsShift(ThousandProtocol.KING_SHIFT
-                                +ThousandProtocol.SPADE_SHIFT))
-            result+=4;
-        return result;
+            this.scoreRow[p] = 10*game.getBigPoints10(p);
+        final int row = this.scoreHistory.addRow(this.scoreRow);
+        this.pointsTableModel.fireTableRowsInserted(row,row);
     }
 
     private String makeBidString(final byte player){
-        if(stage==Stage.BIDDING
-           || stage==Stage.SELECTING_FIRST
-           || stage==Stage.SELECTING_SECOND
-           || stage==Stage.CONTRACTING){
-            if(bids10[player]==0)
+        final ThousandGame.Stage stage = game.getStage();
+        final byte bid10 = game.getBid10(player);
+        if(stage==ThousandGame.Stage.BIDDING
+           || stage==ThousandGame.Stage.SELECTING_FIRST
+           || stage==ThousandGame.Stage.SELECTING_SECOND
+           || stage==ThousandGame.Stage.CONTRACTING){
+            if(bid10==0)
                 return " (passed)";
-            else if(bids10[player]==-1)
+            else if(bid10==-1)
                 return "";
-            return " ("+(10*bids10[player])+")";
+            return " ("+(10*bid10)+")";
         }else{
-            if(player==biddingWinner)
-                return " (plays "+(10*bids10[player])+")";
+            if(player==game.getBiddingWinner())
+                return " (plays "+(10*bid10)+")";
             else
                 return "";
         }
@@ -307,7 +217,7 @@ public abstract class JThousandBoard
         myHand = new JCards.Hand("Me",0.5f,0.75f,0.5f);
 
         for(byte shift=0;shift<24;shift++)
-            if(sets[table.myTurnGamePlayer].containsShift(shift))
+            if((game.getCards(table.myTurnGamePlayer)&(1<<shift))!=0)
                 myHand.cards.insertElementAt
                     (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
                                   JCards.UNCLICKABLE),
@@ -338,6 +248,7 @@ public abstract class JThousandBoard
         this.jCards.hands.add(secondOpponentHand);
 
         this.setArrows();
+        this.setLabel();
 
         if(this.myTurn())
             showBidding(false);
@@ -345,75 +256,141 @@ public abstract class JThousandBoard
         this.repaint();
     }
 
-    public boolean initialize(final java.util.Vector<Byte> initialMessage){
-
-        try{
-            //Initialization fails if table was created not for 3 players:
-            if(numberOfPlayers!=3)
-                return false;
-
-            //We expect move only from the first player:
-            setFirstPlayer();
+    //Shows the number of cards we don't know in the hand:
+    private static void setHiddenCards(final JCards.Hand hand,
+                                       final int number){
+        while(hand.cards.size()>number)
+            hand.cards.remove(hand.cards.lastElement());
+        while(hand.cards.size()<number)
+            hand.cards.add(new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
+    }
 
-            //Game starts with bidding:
-            stage = Stage.BIDDING;
-            //Player 0 will start bidding:
-            startsBidding = turn;
+    //Brings hands up to date with the game after a move:
+    private void updateHands(){
+        final ThousandGame.Stage stage = game.getStage();
+        final byte me = table.myTurnGamePlayer;
+
+        final boolean selecting
+            = myTurn() && (stage==ThousandGame.Stage.SELECTING_FIRST
+                           || stage==ThousandGame.Stage.SELECTING_SECOND);
+        final boolean playing
+            = myTurn() && (stage==ThousandGame.Stage.PLAYING_FIRST
+                           || stage==ThousandGame.Stage.PLAYING_SECOND
+                           || stage==ThousandGame.Stage.PLAYING_THIRD);
+        final int clickable
+            = (selecting ? game.getCards(me)
+               : (playing ? game.playableShifts() : 0));
+        myHand.cards.clear();
+        for(byte shift=0;shift<24;shift++)
+            if((game.getCards(me)&(1<<shift))!=0)
+                myHand.cards.insertElementAt
+                    (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
+                                         ((clickable&(1<<shift))!=0
+                                          ?shift
+                                          :JCards.UNCLICKABLE)),
+                     0);
 
-            deal();
+        setHiddenCards(firstOpponentHand,
+                       game.getNumberOfCards(table.getMyOpponentTurnGamePlayer(1)));
+        setHiddenCards(secondOpponentHand,
+                       game.getNumberOfCards(table.getMyOpponentTurnGamePlayer(2)));
+
+        if(stage==ThousandGame.Stage.SELECTING_FIRST
+           || stage==ThousandGame.Stage.SELECTING_SECOND
+           || stage==ThousandGame.Stage.CONTRACTING){
+            if(game.getBiddingWinner()==me || game.getMust()==0){
+                //I took must, or it's not shown.
+                jCards.hands.remove(mustHand);
+            }else{
+                mustHand.cards.clear();
+                for(byte shift=0;shift<24;shift++)
+                    if((game.getMust()&(1<<shift))!=0)
+                        mustHand.cards.insertElementAt
+                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
+                                                 JCards.UNCLICKABLE),
+                             0);
+            }
+        }else if(stage!=ThousandGame.Stage.BIDDING){
+            mustHand.cards.clear();
+        }
+    }
 
-            Arrays.fill(bigPoints10,0);
+    private String turnScreenName(){
+        return this.table.getPlayer(turn).getScreenName();
+    }
 
-            //Handle message with what cards we have:
+    private void setLabel(){
+        switch(game.getStage()){
+        case BIDDING:
+            this.jLabel.setText(myTurn()
+                                ?"It's your turn to bid."
+                                :"It's "+turnScreenName()+"'s turn to bid.");
+            break;
+        case SELECTING_FIRST:
+        case SELECTING_SECOND:
+            this.jLabel.setText
+                (myTurn()
+                 ?"It's your turn. Select a card to be passed to "
+                 +this.table.getMyOpponent
+                 (game.getStage()==ThousandGame.Stage.SELECTING_FIRST?1:2)
+                 .getScreenName()+"."
+                 :"It's "+turnScreenName()+"'s turn to pass cards.");
+            break;
+        case CONTRACTING:
+            this.jLabel.setText(myTurn()
+                                ?"It's your turn to choose contract."
+                                :"It's "+turnScreenName()
+                                +"'s turn to choose contract.");
+            break;
+        case ENDED:
+            this.jLabel.setText("Game over.");
+            break;
+        default:
+            this.jLabel.setText(myTurn()
+                                ?"It's your turn to play."
+                                :"It's "+turnScreenName()+"'s turn to play.");
+        }
+    }
 
-            final ThousandProtocol.Deserialized_1_DEAL deserialized
-                = new ThousandProtocol.Deserialized_1_DEAL(initialMessage);
+    public boolean initialize(final MessageBuffer initialMessage){
 
-            d("cardSet24: "+deserialized.thousandCardSet);
+        //Initialization fails if table was created not for 3 players:
+        if(numberOfPlayers!=3)
+            return false;
 
-            sets[table.myTurnGamePlayer].value = deserialized.thousandCardSet;
+        if(!game.initialize(table,initialMessage)){
+            p("Couldn't initialize game.");
+            return false;
+        }
+        d("cardSet24: "+game.getCards(table.myTurnGamePlayer));
 
-            this.initializeHands();
+        //We expect move only from the first player:
+        setFirstPlayer();
 
-            //Insert row of zeros into the table:
-            addPointsTableRow();
+        this.initializeHands();
 
-            //TODO: Finish displaying info in all states.
-            if(myTurn()){
-                this.jLabel.setText("It's your turn to bid.");
-            }else if(opponentsTurn(1)){
-                this.jLabel.setText
-                    ("It's "+this.table.getMyFirstOpponent().getScreenName()
-                     +"'s turn to bid.");
-            }else{
-                this.jLabel.setText
-                    ("It's "+this.table.getMySecondOpponent().getScreenName()
-                     +"'s turn to bid.");
-            }
+        //Insert row of zeros into the table:
+        addPointsTableRow();
 
-            return true;
-        }catch(MessageDeserializationException e){
-            p("Problem: "+e);
-            return false;
-        }
+        return true;
     }
 
     private void bid(final byte bid10){
 
-        if(stage == Stage.BIDDING){
-            final Vector<Byte> move
+        final ThousandGame.Stage stage = game.getStage();
+        if(stage == ThousandGame.Stage.BIDDING){
+            final MessageBuffer move
                 = ThousandProtocol.serialize_1_BID(bid10);
 
-            this.sendMove(move);
             //If it's second pass, we can't send the move to ourselves by
             //invoking moveListener, because instead of BID message we
             //should get BID_END_..._MUST from the server:
-            final boolean secondPass
-                = (bid10==0) && (bids10[0]==0 || bids10[1]==0 || bids10[2]==0);
-            if(!secondPass)
+            final boolean echoed = game.serverEchoes(move);
+            this.sendMove(move);
+            if(!echoed)
                 this.moveListener.handle_1_MOVE_MADE(move);
-        }else if(stage == Stage.CONTRACTING){
-            final Vector<Byte> move
+        }else if(stage == ThousandGame.Stage.CONTRACTING){
+            final MessageBuffer move
                 = ThousandProtocol.serialize_1_CONTRACT(bid10);
 
             this.sendMove(move);
@@ -424,11 +401,13 @@ public abstract class JThousandBoard
     }
 
     private void showBidding(final boolean contracting){
-        final byte minBid10 = (contracting?bids10[turn]:minimumNextBid10);
-        byte maxBid10 = maxBid10();
+        final byte minBid10 = (contracting
+                               ?game.getBid10(turn)
+                               :game.getMinimumNextBid10());
+        byte maxBid10 = game.maxBid10();
         //In case player bids 130, but later throws away a queen by mistake:
-        if(maxBid10<bids10[turn])
-            maxBid10=bids10[turn];
+        if(maxBid10<game.getBid10(turn))
+            maxBid10=game.getBid10(turn);
         final Box biddingPanel = Box.createVerticalBox();
         final JScrollPane biddingScrollPane = new JScrollPane(biddingPanel);
         final JThousandBoard me = this;
@@ -436,6 +415,14 @@ public abstract class JThousandBoard
                                         +(contracting?"contract":"bid")+":");
         label.setAlignmentX(0.5f);
         biddingPanel.add(label);
+        final byte hint10
+            = ThousandHandEvaluator.bid10Hint(game.getCards(turn),contracting);
+        final JLabel hintLabel
+            = new JLabel(hint10<minBid10
+                         ?"Hint: "+(contracting?""+10*((int)minBid10):"pass")
+                         :"Hint: up to "+10*((int)hint10));
+        hintLabel.setAlignmentX(0.5f);
+        biddingPanel.add(hintLabel);
 
         if(!contracting){
             final JRunnableButton button
@@ -470,31 +457,34 @@ public abstract class JThousandBoard
     }
 
     private void cardClicked(final int virtualColor){
-        if(stage == Stage.SELECTING_FIRST
-           || stage == Stage.SELECTING_SECOND){
+        final ThousandGame.Stage stage = game.getStage();
+        if(stage == ThousandGame.Stage.SELECTING_FIRST
+           || stage == ThousandGame.Stage.SELECTING_SECOND){
             final byte shift = (byte)virtualColor;
-            final Vector<Byte> move
+            final MessageBuffer move
                 = ThousandProtocol.serialize_1_SELECT(shift);
             this.sendMove(move);
             this.moveListener.handle_1_MOVE_MADE(move);
-        }else if(stage == Stage.PLAYING_FIRST
-                 || stage == Stage.PLAYING_SECOND
-                 || stage == Stage.PLAYING_THIRD){
+        }else if(stage == ThousandGame.Stage.PLAYING_FIRST
+                 || stage == ThousandGame.Stage.PLAYING_SECOND
+                 || stage == ThousandGame.Stage.PLAYING_THIRD){
             //We play a card! Let's see which one:
             final byte shift = (byte)virtualColor;
 
-            //We send the move to the server.
-
-            final Vector<Byte> move
+            final MessageBuffer move
                 = ThousandProtocol.serialize_1_PLAY(shift);
-            this.sendMove(move);
 
             //To save bandwidth, server will not send the move back,
             //so we pretend it's sent by invoking this.moveListener's
             //method. However, we can only do it, if we really know
             //what the server would send us. In one case we don't
             //know, when new cards are dealt.
-            if(!(stage == Stage.PLAYING_THIRD && myHand.cards.size()==1))
+            final boolean echoed = game.serverEchoes(move);
+
+            //We send the move to the server.
+            this.sendMove(move);
+
+            if(!echoed)
                 this.moveListener.handle_1_MOVE_MADE(move);
         }else{
             p("ERROR! JTB::cC("+virtualColor
@@ -520,679 +510,69 @@ public abstract class JThousandBoard
                                     JCards.UNCLICKABLE));
     }
 
-    public int moveMade(final Vector<Byte> move,
+    public int moveMade(final MessageBuffer move,
                         final int[] endResult){
-        d("BEFORE: "+makeStateString());
-        d("JTB.MM "+ThousandProtocol.lookupMessageType(move)
-                 +" "+Message.toString(move));
-
-        //Are we still biding?
-        if(stage==Stage.BIDDING){
-
-            switch(ThousandProtocol.lookupMessageType(move)){
-            case BID_1:
-                //First we deserialize the move.
-                try{
-                    ThousandProtocol.Deserialized_1_BID deserialized
-                        = new ThousandProtocol.Deserialized_1_BID(move);
-                    bids10[turn] = deserialized.bid10;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_BID failed.");
-                    return INVALID|END;
-                }
+        final ThousandGame.Stage stageBefore = game.getStage();
 
-                if(bids10[turn]!=0)
-                    minimumNextBid10=(byte)(bids10[turn]+1);
-    
-                //Skip one player if passed.
-                if(bids10[getNextPlayer()]!=0)
-                    setNextPlayer();
-                else
-                    setNextPlayer(2);
-
-                if(myTurn()){
-                    showBidding(false);
-                    this.jLabel.setText("It's your turn to bid.");
-                }else if(opponentsTurn(1)){
-                    this.jLabel.setText
-                        ("It's "
-                         +this.table.getMyFirstOpponent().getScreenName()
-                         +"'s turn to bid.");
-                }else{
-                    this.jLabel.setText
-                        ("It's "
-                         +this.table.getMySecondOpponent().getScreenName()
-                         +"'s turn to bid.");
-                }
-
-                break;
-            case BID_END_SHOW_MUST_1:
-
-                try{
-                    ThousandProtocol.Deserialized_1_BID_END_SHOW_MUST d
-                        = new ThousandProtocol.Deserialized_1_BID_END_SHOW_MUST
-                        (move);
-                    this.must.value = d.must;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_BID_END_SHOW_MUST failed.");
-                    return INVALID|END;
-                }
-                
-            case BID_END_HIDDEN_MUST_1:
-
-                bids10[turn] = 0;
-
-                biddingWinner = (byte)((bids10[0]==0 && bids10[1]==0)?2
-                                       :((bids10[1]==0 && bids10[2]==0)?0
-                                         :((bids10[2]==0 && bids10[0]==0)?1
-                                           :-1)));
-
-                turn = biddingWinner;
-
-                //GUI stuff:
-                if(myTurn()){
-                    //I take cards from must.
-                    sets[turn].addAll(must);
-
-                    jCards.hands.remove(mustHand);
-                    myHand.cards.clear();
-                    for(byte shift=0;shift<24;shift++)
-                        if(sets[turn].containsShift(shift))
-                            myHand.cards.insertElementAt
-                                (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                              shift),
-                                 0);
-                    this.jLabel.setText
-                        ("It's your turn. Select a card to be passed to "
-                         +this.table.getMyFirstOpponent().getScreenName()+".");
-                }else{
-                    //Someone else takes must.
-                    if(!must.isEmpty()){
-                        //Must should be shown.
-                        mustHand.cards.clear();
-                        for(byte shift=0;shift<24;shift++)
-                            if(must.containsShift(shift))
-                                mustHand.cards.insertElementAt
-                                    (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                                  JCards.UNCLICKABLE),
-                                     0);
-                    }else{
-                        //Must not shown.
-                        jCards.hands.remove(mustHand);
-                    }
-
-                    //Add 3 cards to the must taker.
-                    if(opponentsTurn(1)){
-                        for(int i=0;i<3;i++)
-                            firstOpponentHand.cards.add
-                                (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                        this.jLabel.setText
-                            ("It's "+this.table.getMyFirstOpponent().getScreenName()
-                             +"'s turn to pass cards.");
-                    }
-                    if(opponentsTurn(2)){
-                        for(int i=0;i<3;i++)
-                            secondOpponentHand.cards.add
-                                (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                        this.jLabel.setText
-                            ("It's "+this.table.getMySecondOpponent().getScreenName()
-                             +"'s turn to pass cards.");
-                    }
-                }
+        d("BEFORE: "+game.makeStateString());
+        d("JTB.MM "+Message.toString(move));
 
-                stage = Stage.SELECTING_FIRST;
-                break;
-            default:
-                p("UNEXPECTED MESSAGE TYPE!");
-                return INVALID|END;
-            }
+        final int moveResult = game.moveMade(move,endResult);
+        if((moveResult&VALIDITY_MASK)!=VALID){
+            p("Invalid move in stage "+stageBefore+"!");
+            return moveResult;
         }
-        else if(stage==Stage.SELECTING_FIRST
-                || stage==Stage.SELECTING_SECOND){
-
-            switch(ThousandProtocol.lookupMessageType(move)){
-            case SELECT_1:
-                if(!myTurn()){
-                    //Not my turn -- card for me!
-                    try{
-                        ThousandProtocol.Deserialized_1_SELECT deserialized
-                            = new ThousandProtocol.Deserialized_1_SELECT(move);
-                        sets[table.myTurnGamePlayer].addShift(deserialized.shift);
-                    }catch(MessageDeserializationException e){
-                        p("Deserialized_1_SELECT failed.");
-                        return INVALID|END;
-                    }
-
-                    //GUI stuff:
-                    if(biddingWinner==table.getMyOpponentTurnGamePlayer(1)){
-                        firstOpponentHand.cards.remove
-                            (firstOpponentHand.cards.lastElement());
-                    }else{
-                        secondOpponentHand.cards.remove
-                            (secondOpponentHand.cards.lastElement());
-                    }
-
-                    myHand.cards.clear();
-                    for(byte shift=0;shift<24;shift++)
-                        if(sets[table.myTurnGamePlayer].containsShift(shift))
-                            myHand.cards.insertElementAt
-                                (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                              JCards.UNCLICKABLE),
-                                 0);
-                }else{
-                    //My turn. I selected a card for someone.
-                    try{
-                        ThousandProtocol.Deserialized_1_SELECT deserialized
-                            = new ThousandProtocol.Deserialized_1_SELECT(move);
-                        sets[table.myTurnGamePlayer].removeShift(deserialized.shift);
-                    }catch(MessageDeserializationException e){
-                        p("Deserialized_1_SELECT failed.");
-                        return INVALID|END;
-                    }
-
-                    //GUI stuff:
-                    myHand.cards.clear();
-                    for(byte shift=0;shift<24;shift++)
-                        if(sets[table.myTurnGamePlayer].containsShift(shift))
-                            myHand.cards.insertElementAt
-                                (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                              (stage==Stage.SELECTING_FIRST
-                                               ?shift
-                                               :JCards.UNCLICKABLE)),
-                                 0);
-
-                    //Who did I select a card for?
-                    if(stage == Stage.SELECTING_FIRST){
-                        firstOpponentHand.cards.add
-                            (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                    }else{
-                        secondOpponentHand.cards.add
-                            (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                    }
-                }
-                break;
-            case SELECT_HIDDEN_1:
-                //Card not from me and not for me.
-                try{
-                    ThousandProtocol.Deserialized_1_SELECT_HIDDEN deserialized
-                        = new ThousandProtocol.Deserialized_1_SELECT_HIDDEN(move);
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_SELECT_HIDDEN failed.");
-                    return INVALID|END;
-                }
-
-                //GUI stuff:
-                //Add one hidden card to first or second opponent?
-                if(biddingWinner==table.getMyOpponentTurnGamePlayer(1)){
-                    firstOpponentHand.cards.remove
-                        (firstOpponentHand.cards.lastElement());
-                    secondOpponentHand.cards.add
-                        (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                }else{
-                    secondOpponentHand.cards.remove
-                        (secondOpponentHand.cards.lastElement());
-                    firstOpponentHand.cards.add
-                        (new JCards.HandCard(Card.UNKNOWN,JCards.UNCLICKABLE));
-                }
-                break;
-            default:
-                p("UNEXPECTED MESSAGE TYPE!");
-                return INVALID|END;
-            }
-            
-            if(stage == Stage.SELECTING_FIRST)
-                stage = Stage.SELECTING_SECOND;
-            else{
-                stage = Stage.CONTRACTING;
-                if(myTurn())
-                    showBidding(true);
-            }
-        }else if(stage == Stage.CONTRACTING){
-            try{
-                ThousandProtocol.Deserialized_1_CONTRACT deserialized
-                    = new ThousandProtocol.Deserialized_1_CONTRACT(move);
-                bids10[turn] = deserialized.contract10;
-            }catch(MessageDeserializationException e){
-                p("Deserialized_1_CONTRACT failed.");
-                return INVALID|END;
-            }
-                
-            //GUI stuff:
-            //If it's me, enable my cards for move:
-            if(myTurn()){
-                myHand.cards.clear();
-                for(byte shift=0;shift<24;shift++)
-                    if(sets[turn].containsShift(shift))
-                        myHand.cards.insertElementAt
-                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                          shift),
-                             0);
-            }
-            stage = Stage.PLAYING_FIRST;
-        }else if(stage == Stage.PLAYING_FIRST){
-
-            //final byte oldTrumpShift = trumpShift;
-            boolean trumpChanges = false;
-
-            switch(ThousandProtocol.lookupMessageType(move)){
-            case PLAY_NEW_TRUMP_1:
-                try{
-                    ThousandProtocol.Deserialized_1_PLAY_NEW_TRUMP deserialized
-                        = new ThousandProtocol.Deserialized_1_PLAY_NEW_TRUMP(move);
-                    firstShift = deserialized.shift;
-                    trumpChanges = true;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_PLAY_NEW_TRUMP failed.");
-                    return INVALID|END;
-                }
-                break;
-            case PLAY_1:
-                try{
-                    ThousandProtocol.Deserialized_1_PLAY deserialized
-                        = new ThousandProtocol.Deserialized_1_PLAY(move);
-                    firstShift = deserialized.shift;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_PLAY failed.");
-                    return INVALID|END;
-                }
-                break;
-            default:
-                p("UNEXPECTED message type in stage "+stage+"!");
-                return INVALID|END;
-            }
-
-            mustHand.cards.clear();
+        d("AFTER: "+game.makeStateString());
 
+        //Cards at table are placed depending on who played them,
+        //so we add them before the turn changes:
+        switch(stageBefore){
+        case PLAYING_FIRST:
             this.jCards.cardsAtTable.clear();
-            this.addTableCard(firstShift);
-            
-            if(myTurn()){
-                sets[turn].removeFirstShift(firstShift,
-                                            trumpShift,
-                                            smallPoints[turn]);
-                myHand.cards.clear();
-                for(byte shift=0;shift<24;shift++)
-                    if(sets[turn].containsShift(shift))
-                        myHand.cards.insertElementAt
-                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                          JCards.UNCLICKABLE),
-                                 0);
-            }else{
-                //Not my turn.
-
-                //We might not know the cards of the player, but we have
-                //to calculate points, etc. anyway using the same method
-                //that server uses. So we create a set having the played
-                //card.
-                final ThousandCardSet set = new ThousandCardSet();
-                set.addShift(firstShift);
-                //If trump changed, we need to add king (or queen) to
-                //the set. We do it by adding all cards:
-                if(trumpChanges)
-                    set.value = 0xFFFFFF;
-
-                set.removeFirstShift(firstShift,
-                                     trumpShift,
-                                     smallPoints[turn]);
-
-                if(opponentsTurn(1)){
-                    firstOpponentHand.cards.remove
-                        (firstOpponentHand.cards.lastElement());
-                }else{
-                    secondOpponentHand.cards.remove
-                        (secondOpponentHand.cards.lastElement());
-                }
-            }
-            setNextPlayer();
-            if(myTurn()){
-                myHand.cards.clear();
-                for(byte shift=0;shift<24;shift++)
-                    if(sets[turn].containsShift(shift)){
-                        final ThousandCardSet copy = new ThousandCardSet();
-                        copy.value = sets[turn].value;
-                        final boolean valid
-                            = copy.removeSecondShift(firstShift,
-                                                     shift,
-                                                     trumpShift.value);
-                        myHand.cards.insertElementAt
-                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                          (valid?shift:JCards.UNCLICKABLE)),
-                             0);
-                    }
-            }
-            stage = Stage.PLAYING_SECOND;
-        }else if(stage == Stage.PLAYING_SECOND){
-            try{
-                ThousandProtocol.Deserialized_1_PLAY deserialized
-                    = new ThousandProtocol.Deserialized_1_PLAY(move);
-                secondShift = deserialized.shift;
-            }catch(MessageDeserializationException e){
-                p("Deserialized_1_PLAY failed.");
-                return INVALID|END;
-            }
-
-            this.addTableCard(secondShift);
-
-            if(myTurn()){
-                sets[turn].removeShift(secondShift);
-                myHand.cards.clear();
-                for(byte shift=0;shift<24;shift++)
-                    if(sets[turn].containsShift(shift))
-                        myHand.cards.insertElementAt
-                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                          JCards.UNCLICKABLE),
-                             0);
-            }else if(opponentsTurn(1)){
-                firstOpponentHand.cards.remove
-                    (firstOpponentHand.cards.lastElement());
-            }else{
-                secondOpponentHand.cards.remove
-                    (secondOpponentHand.cards.lastElement());
-            }
-            setNextPlayer();
-            if(myTurn()){
-                myHand.cards.clear();
-                for(byte shift=0;shift<24;shift++)
-                    if(sets[turn].containsShift(shift)){
-                        final ThousandCardSet copy = new ThousandCardSet();
-                        copy.value = sets[turn].value;
-                        final S dummyS = new S();
-                        final B dummyB = new B();
-                        final boolean valid
-                            = copy.removeThirdShift(firstShift,
-                                                    secondShift,
-                                                    shift,
-                                                    trumpShift.value,
-                                                    dummyS,
-                                                    dummyS,
-                                                    dummyS,
-                                                    dummyB);
-                        myHand.cards.insertElementAt
-                            (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                          (valid?shift:JCards.UNCLICKABLE)),
-                             0);
-                    }
-            }
-            stage = Stage.PLAYING_THIRD;
-        }else if(stage == Stage.PLAYING_THIRD){
-
-            ThousandCardSet newCards = null;
-
-            switch(ThousandProtocol.lookupMessageType(move)){
-            case PLAY_1:
-                try{
-                    final ThousandProtocol.Deserialized_1_PLAY deserialized
-                        = new ThousandProtocol.Deserialized_1_PLAY(move);
-                    thirdShift = deserialized.shift;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_PLAY failed.");
-                    return INVALID|END;
-                }
-                break;
-            case PLAY_AND_DEAL_1:
-                try{
-                    final ThousandProtocol.Deserialized_1_PLAY_AND_DEAL d
-                        = new ThousandProtocol.Deserialized_1_PLAY_AND_DEAL
-                        (move);
-                    thirdShift = d.shift;
-                    newCards = new ThousandCardSet();
-                    newCards.value = d.thousandCardSet;
-                }catch(MessageDeserializationException e){
-                    p("Deserialized_1_PLAY_AND_DEAL failed.");
-                    return INVALID|END;
-                }
-                break;
-            default:
-                p("UNEXPECTED message type in stage "+stage+"!");
-                return INVALID|END;
-            }
-
-            //We might not know the cards of the player, but we have
-            //to calculate points, etc. anyway using the same method
-            //that server uses. So we create a set having the played
-            //card.
-            final ThousandCardSet set = new ThousandCardSet();
-            set.addShift(thirdShift);
-            final B turnIncrement = new B();
-            set.removeThirdShift(firstShift,
-                                 secondShift,
-                                 thirdShift,
-                                 trumpShift.value,
-                                 smallPoints[getPreviousPlayer(2)],
-                                 smallPoints[getPreviousPlayer()],
-                                 smallPoints[turn],
-                                 turnIncrement);
-
-            this.addTableCard(thirdShift);
-
-            if(myTurn())
-                sets[turn].removeShift(thirdShift);
-            
-            if(sets[table.myTurnGamePlayer].isEmpty()){
-                //No more cards
-                //Add points for each player:
-                for(byte p = 0; p<numberOfPlayers; p++){
-                    if(p==biddingWinner){
-                        if(smallPoints[p].value >= 10*bids10[p])
-                            bigPoints10[p] += bids10[p];
-                        else
-                            bigPoints10[p] -= bids10[p];
-                    }else{
-                        if(bigPoints10[p] < 80)
-                            bigPoints10[p] += (smallPoints[p].value+4)/10;
-                    }
-                }
-
-                addPointsTableRow();
-
-                //The end?
-                if(bigPoints10[biddingWinner]>=100){
-                    stage = Stage.ENDED;
-                    jCards.hands.clear();
-                    setArrows();
-                    this.repaint();
-                    d("AFTER: "+makeStateString());
-                    return VALID|END;
-                }else{
-                    //Not the end, but next bidding.
-                    stage = Stage.BIDDING;
-                    startsBidding = (byte)((startsBidding+1)%numberOfPlayers);
-                    turn = startsBidding;
-                    deal();
-                    sets[table.myTurnGamePlayer].value = newCards.value;
-                    initializeHands();
-                }
-            }
-            else{
-                //Still some cards in the set.
-                //GUI stuff:
-                if(myTurn()){
-                    myHand.cards.clear();
-                    for(byte shift=0;shift<24;shift++)
-                        if(sets[turn].containsShift(shift))
-                            myHand.cards.insertElementAt
-                                (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                              JCards.UNCLICKABLE),
-                                 0);
-                }else if(opponentsTurn(1)){
-                    firstOpponentHand.cards.remove
-                        (firstOpponentHand.cards.lastElement());
-                }else{
-                    secondOpponentHand.cards.remove
-                        (secondOpponentHand.cards.lastElement());
-                }
-                setNextPlayer(turnIncrement.value);
-                if(myTurn()){
-                    myHand.cards.clear();
-                    for(byte shift=0;shift<24;shift++)
-                        if(sets[turn].containsShift(shift)){
-                            myHand.cards.insertElementAt
-                                (new JCards.HandCard(THOUSAND_SHIFT_TO_CARD[shift],
-                                              shift),
-                                 0);
-                        }
-                }
-                stage = Stage.PLAYING_FIRST;
-            }
-        }
-        /*
-  elseif(stage==CONTRACTING)
-    {
-      //First we deserialize the move. If deserialization fails, current
-      //player sent invalid move.
-      if(!ThousandProtocol::deserialize_1_CONTRACT(move,contract10))
-        {
-          p("deserialize_1_CONTRACT failed."
-                   
-          return INVALID|END;
-        }
-      //Let's see whether the move is valid:
-      if(contract10>maxBid10() || contract10<bids10[turn])
-        {
-          p("Incorrect contract: contract10=="+(int)(contract10)
-                   
-          return INVALID|END;
-        }
-      
-      sendToOthers(move,moveMessages);
-      stage = PLAYING_FIRST;
-      return VALID|CONTINUE;
-    }
-  else if(stage==PLAYING_FIRST)
-    {
-      if(!ThousandProtocol::deserialize_1_PLAY(move,firstShift))
-        {
-          p("deserialize_1_PLAY failed."
-                   
-          return INVALID|END;
+            this.addTableCard(game.getFirstShift());
+            break;
+        case PLAYING_SECOND:
+            this.addTableCard(game.getSecondShift());
+            break;
+        case PLAYING_THIRD:
+            this.addTableCard(game.getThirdShift());
+            break;
+        default:
         }
 
-      const int_fast8_t oldTrumpShift = trumpShift;
-      
-      if(!sets[turn].removeFirstShift(firstShift,
-                                       trumpShift,
-                                       smallPoints[turn]))
-        {
-          p("!sets[turn].removeFirstShift(firstShift,trumpShift)"
-                   <<" firstShift=="
-                   +(int)(firstShift)<<" sets[turn].value=="
-                   <<sets[turn].value<<" trumpShift=="<<trumpShift
-                   
-          return INVALID|END;
-        }
+        this.turn = game.getTurn();
+        final ThousandGame.Stage stage = game.getStage();
 
-      if(trumpShift==oldTrumpShift)
-        sendToOthers(move,moveMessages);
-      else
-        {//New trump!
-          std::vector<char> message;
-          ThousandProtocol::serialize_1_PLAY_NEW_TRUMP(firstShift,message);
-          sendToOthers(message,moveMessages);
-        }
-      
-      stage = PLAYING_SECOND;
-      setNextPlayer();
-      return VALID|CONTINUE;
-    }
-  else if(stage==PLAYING_SECOND)
-    {
-      if(!ThousandProtocol::deserialize_1_PLAY(move,secondShift))
-        {
-          p("deserialize_1_PLAY failed."
-                   
-          return INVALID|END;
-        }
-      if(!sets[turn].removeSecondShift(firstShift,secondShift,trumpShift))
-        {
-          std::cout
-            <<"!sets[turn].removeSecondShift(firstShift,secondShift,"
-            <<"trumpShift) firstShift=="+(int)(firstShift)
-            <<" secondShift=="+(int)(secondShift)
-            <<" sets[turn].value=="<<sets[turn].value
-            <<" trumpShift=="<<trumpShift
-            
-          return INVALID|END;
-        }
+        //Deal has ended:
+        if(stageBefore==ThousandGame.Stage.PLAYING_THIRD
+           && stage!=ThousandGame.Stage.PLAYING_FIRST)
+            addPointsTableRow();
 
-      sendToOthers(move,moveMessages);
-      
-      stage = PLAYING_THIRD;
-      setNextPlayer();
-      return VALID|CONTINUE;
-    }
-  else if(stage==PLAYING_THIRD)
-    {
-      if(!ThousandProtocol::deserialize_1_PLAY(move,thirdShift))
-        {
-          p("deserialize_1_PLAY failed."
-                   
-          return INVALID|END;
-        }
-      if(!sets[turn].removeThirdShift(firstShift,
-                                       secondShift,
-                                       thirdShift,
-                                       trumpShift,
-                                       smallPoints[getPreviousPlayer(2)],
-                                       smallPoints[getPreviousPlayer()],
-                                       smallPoints[turn]))
-        {
-          std::cout
-            <<"!sets[turn].removeThirdShift(firstShift,secondShift,"
-            <<"thirdShift,trumpShift) firstShift=="+(int)(firstShift)
-            <<" secondShift=="+(int)(secondShift)
-            <<" thirdShift=="+(int)(thirdShift)
-            <<" sets[turn].value=="<<sets[turn].value
-            <<" trumpShift=="<<trumpShift
-            
-          return INVALID|END;
+        if(stage==ThousandGame.Stage.ENDED){
+            jCards.hands.clear();
+            setArrows();
+            setLabel();
+            this.repaint();
+            return moveResult;
         }
 
-      sendToOthers(move,moveMessages);
-
-      if(sets[turn].isEmpty())
-        {//No more cards
-          //Add points for each player:
-          for(Player p = 0; p<numberOfPlayers; p++)
-            {
-              if(p==biddingWinner)
-                {
-                  if(smallPoints[p]>=10*contract10)
-                    bigPoints10[p] += contract10;
-                  else                  
-                    bigPoints10[p] -= contract10;
-                }
-              else
-                bigPoints10[p] += (smallPoints[p]+4)/10;
-            }
-          //The end?
-          if(bigPoints10[biddingWinner]>=100)
-            {
-              stage = ENDED;
-              return VALID|END;
-            }
-
-          stage = BIDDING;
-          startsBidding = (startsBidding+1)%numberOfPlayers;
-          deal();
-          turn = startsBidding;
-        }
-      else
-        {//Still some cards in the set.
-          stage = PLAYING_FIRST;
-          setNextPlayer();
-        }
-      return VALID|CONTINUE;
-    }
-        */
-        else{
-            p("Incorrect stage: "+stage);
-            return INVALID|END;
+        if(stage==ThousandGame.Stage.BIDDING
+           && stageBefore!=ThousandGame.Stage.BIDDING){
+            //Next bidding.
+            initializeHands();
+            return moveResult;
         }
 
+        updateHands();
+        if(myTurn()
+           && (stage==ThousandGame.Stage.BIDDING
+               || (stage==ThousandGame.Stage.CONTRACTING
+                   && stageBefore!=ThousandGame.Stage.CONTRACTING)))
+            showBidding(stage==ThousandGame.Stage.CONTRACTING);
+
         setArrows();
+        setLabel();
         this.repaint();
-        d("AFTER: "+makeStateString());
-        return VALID|CONTINUE;
+        return moveResult;
     }
-    
 }
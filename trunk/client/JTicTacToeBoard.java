@@ -46,6 +46,9 @@ public abstract class JTicTacToeBoard extends JBoard{
 
     private final JLabel label;
     private final JMoveButton[][] buttons;
+    //Reused for decoding moves:
+    private final TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE moveView
+        = new TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE();
 
     public JTicTacToeBoard(final Table table,
                            final MoveListener moveListener,
@@ -65,7 +68,7 @@ public abstract class JTicTacToeBoard extends JBoard{
                 this.board[row][column] = Field.EMPTY;
                 this.buttons[row][column]
                     = new JMoveButton(row,column,moveListener){
-                            public void sendMove(final Vector<Byte> move){
+                            public void sendMove(final MessageBuffer move){
                                 me.sendMove(move);
                             }
                         };
@@ -101,7 +104,7 @@ public abstract class JTicTacToeBoard extends JBoard{
             this.setMinimumSize(new Dimension(100,100));
         }
 
-        public abstract void sendMove(final Vector<Byte> move);
+        public abstract void sendMove(final MessageBuffer move);
 
         public void reset(){
             this.field = Field.EMPTY;
@@ -119,7 +122,7 @@ public abstract class JTicTacToeBoard extends JBoard{
         }
 
         public void actionPerformed(ActionEvent e){
-            final Vector<Byte> move
+            final MessageBuffer move
                 = TicTacToeProtocol.serialize_1_TIC_TAC_TOE_MOVE(this.row,
                                                                  this.column);
 
@@ -144,7 +147,7 @@ public abstract class JTicTacToeBoard extends JBoard{
         }
     }
 
-    public boolean initialize(final Vector<Byte> initialMessage){
+    public boolean initialize(final MessageBuffer initialMessage){
         //My turn?
         //TODO: Check whether 2 players are present. If not, return false.
 
@@ -173,21 +176,16 @@ public abstract class JTicTacToeBoard extends JBoard{
         return true;
     }
     
-    public int moveMade(final Vector<Byte> move,
+    public int moveMade(final MessageBuffer move,
                         final int[] endResult){
 
-        TicTacToeProtocol.Deserialized_1_TIC_TAC_TOE_MOVE deserialized;
-        try{
-            deserialized
-                = new TicTacToeProtocol.Deserialized_1_TIC_TAC_TOE_MOVE(move);
-        }catch(final MessageDeserializationException e){
+        if(!this.moveView.wrap(move)){
             d("JTTTB.mM deserizlization failed.");
-            e.printStackTrace();
             return INVALID|END;
         }
 
-        final byte row = deserialized.row;
-        final byte column = deserialized.column;
+        final byte row = this.moveView.row();
+        final byte column = this.moveView.column();
 
         d("JTTTB.mM row=="+(int)row+" column=="+(int)column
                  +"board[row][column]=="+board[row][column]);
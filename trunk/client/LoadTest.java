@@ -0,0 +1,153 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Creates many tables full of headless players on one
+ * SelectorTransport and prints how many moves and games per second
+ * the server handles.
+ *
+ * Usage: LoadTest host port tables game
+ * e.g. LoadTest localhost 1090 1000 tictactoe
+ * Games: tictactoe, tictactoebot, thousand, thousandbot
+ */
+public class LoadTest{
+
+    private static final AtomicLong moves = new AtomicLong();
+    private static final AtomicLong games = new AtomicLong();
+    private static final AtomicLong tables = new AtomicLong();
+
+    private static GameLogic createGameLogic(final String game){
+        if(game.equals("tictactoe"))
+            return new TicTacToeLogic();
+        if(game.equals("tictactoebot"))
+            return new TicTacToeBot();
+        if(game.equals("thousand"))
+            return new ThousandGame();
+        if(game.equals("thousandbot"))
+            return new ThousandBot(100,1,new java.util.Random());
+        throw new IllegalArgumentException("Unknown game: "+game);
+    }
+
+    private static HeadlessPlayer createPlayer(final String screenName,
+                                               final String game,
+                                               final BlockingQueue<Long> created){
+        return new HeadlessPlayer(screenName,createGameLogic(game)){
+            public void d(final String message){
+                System.err.println(screenName+": "+message);
+            }
+            public void e(final String message,final Throwable t){
+                System.err.println(screenName+": "+message);
+                t.printStackTrace();
+            }
+            public void tableCreated(final long tableId){
+                created.add(tableId);
+            }
+            public void moveMade(){
+                moves.incrementAndGet();
+            }
+            public void gameEnded(final int[] endResult){
+                games.incrementAndGet();
+            }
+            public void disconnected(final Exception cause){
+                System.err.println(screenName+": disconnected: "+cause);
+            }
+        };
+    }
+
+    public static void main(final String[] arguments){
+        try{
+            final String serverHost = arguments[0];
+            final int serverPort = Integer.parseInt(arguments[1]);
+            final int numberOfTables = Integer.parseInt(arguments[2]);
+            final String game = arguments[3];
+
+            final InetSocketAddress address
+                = new InetSocketAddress(serverHost,serverPort);
+            final byte numberOfPlayers
+                = createGameLogic(game).getNumberOfPlayers();
+            final MessageBuffer query
+                = (numberOfPlayers==2
+                   ? GeneralProtocol.serialize_1_CREATE_TICTACTOE_TABLE()
+                   : GeneralProtocol.serialize_1_CREATE_THOUSAND_TABLE());
+
+            final SelectorTransport transport
+                = new SelectorTransport("LoadTest"){
+                        public void d(final String message){
+                            System.err.println(message);
+                        }
+                        public void e(final String message,final Throwable t){
+                            System.err.println(message);
+                            t.printStackTrace();
+                        }
+                    };
+
+            final BlockingQueue<Long> created
+                = new LinkedBlockingQueue<Long>();
+
+            //Table creators join automatically. Others join when
+            //we learn the table id:
+            for(int t=0;t<numberOfTables;t++)
+                createPlayer("c"+t,game,created)
+                    .create(transport,address,query);
+
+            final long start = System.currentTimeMillis();
+            int p = 0;
+            while(true){
+                final Long tableId = created.poll(1,TimeUnit.SECONDS);
+                if(tableId!=null){
+                    for(int i=1;i<numberOfPlayers;i++)
+                        createPlayer("p"+(p++),game,created)
+                            .join(transport,address,tableId);
+                    tables.incrementAndGet();
+                    continue;
+                }
+                final long seconds
+                    = Math.max(1,(System.currentTimeMillis()-start)/1000);
+                System.out.println("tables: "+tables.get()
+                                   +" moves: "+moves.get()
+                                   +" ("+(moves.get()/seconds)+"/s)"
+                                   +" games: "+games.get()
+                                   +" ("+(games.get()/seconds)+"/s)");
+            }
+        }catch(final Exception e){
+            System.err.println("Exception: "+e);
+            System.err.println("Stack trace:");
+            e.printStackTrace();
+        }
+    }
+}
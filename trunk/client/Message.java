@@ -38,242 +38,271 @@ import java.util.*;
 
 class Message{
 
-    public static Vector<Byte> toVector(final byte[] rawData){
-        final Vector<Byte> result=new Vector<Byte>();
-        for(int i=0;i<rawData.length;i++)
-            result.add(rawData[i]);
-        return result;
-    }
-
-    public static byte[] toArray(final Vector<Byte> rawData){
-        final byte[] result=new byte[rawData.size()];
-        for(int i=0;i<result.length;i++)
-            result[i]=rawData.get(i);
-        return result;
-    }
-
-    /*
-    public Iterator<Byte> iterator(){
-        return this.data.iterator();
-    }
-
-    public Vector<Byte> getRawData(){
-        return this.data;
-    }
-    */
-
     //Appends value to message
     public static void appendInteger(final long value,
                               final int numberOfBytes,
-                              final Vector<Byte> message){
+                              final MessageBuffer message){
         for(int i=0;i<numberOfBytes;i++){
-            message.add((byte)(0xFF & (value>>(8*(numberOfBytes-1-i)))));
+            message.append((byte)(0xFF & (value>>(8*(numberOfBytes-1-i)))));
         }
     }
 
-    public static void append1Byte(final long value,final Vector<Byte> message){
+    public static void append1Byte(final long value,final MessageBuffer message){
         appendInteger(value,1,message);
     }
 
-    public static void append2Bytes(final long value,final Vector<Byte> message){
+    public static void append2Bytes(final long value,final MessageBuffer message){
         appendInteger(value,2,message);
     }
 
-    public static void append3Bytes(final long value,final Vector<Byte> message){
+    public static void append3Bytes(final long value,final MessageBuffer message){
         appendInteger(value,3,message);
     }
 
-    public static void append4Bytes(final long value,final Vector<Byte> message){
+    public static void append4Bytes(final long value,final MessageBuffer message){
         appendInteger(value,4,message);
     }
 
-    public static void append8Bytes(final long value,final Vector<Byte> message){
+    public static void append8Bytes(final long value,final MessageBuffer message){
         appendInteger(value,8,message);
     }
 
-    public static void appendCString(final String string,final Vector<Byte> message){
+    public static void appendCString(final String string,final MessageBuffer message){
         for(int i=0;i<string.length();i++)
-            message.add((byte)string.charAt(i));
-        message.add((byte)0);
+            message.append((byte)string.charAt(i));
+        message.append((byte)0);
     }
 
-    public static void appendBinary(final Vector<Byte> value,
-                             final Vector<Byte> message){
+    public static void appendBinary(final MessageBuffer value,
+                             final MessageBuffer message){
         final int length = value.size();
         if(value.size()>0x7FFF){
             //TODO: Better handling here.
             System.exit(3);
         }
         append2Bytes(value.size(),message);
-        message.addAll(value);
+        message.append(value);
+    }
+
+    //Read value at index without moving read cursor.
+    public static byte peek1Byte(final MessageBuffer message,
+                                 final int index)
+        throws MessageDeserializationException
+    {
+        if(index<0 || index>=message.size())
+            throw new MessageDeserializationException("End of message.");
+        return message.get(index);
     }
 
     //Read value from this message
-    public static byte read1Byte(Iterator<Byte> iterator)
+    public static byte read1Byte(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            return iterator.next();
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        return message.read();
     }
 
     //Read value from this message
-    public static short read2Bytes(Iterator<Byte> iterator)
+    public static short read2Bytes(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            short result=0;
-            byte b;
-
-            b = iterator.next();
-            result|=(0xFF&(short)b)<<8;
-            b = iterator.next();
-            result|=(0xFF&(short)b);
-
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        short result=0;
+        byte b;
+
+        b = message.read();
+        result|=(0xFF&(short)b)<<8;
+        b = message.read();
+        result|=(0xFF&(short)b);
+
+        return result;
     }
 
     //Read value from this message
-    public static int read3Bytes(Iterator<Byte> iterator)
+    public static int read3Bytes(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            int result=0;
-            byte b;
-
-            b = iterator.next();
-            result|=(0xFF&(int)b)<<16;
-            b = iterator.next();
-            result|=(0xFF&(int)b)<<8;
-            b = iterator.next();
-            result|=(0xFF&(int)b);
-
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        int result=0;
+        byte b;
+
+        b = message.read();
+        result|=(0xFF&(int)b)<<16;
+        b = message.read();
+        result|=(0xFF&(int)b)<<8;
+        b = message.read();
+        result|=(0xFF&(int)b);
+
+        return result;
     }
 
 
     //Read value from this message
-    public static int read4Bytes(Iterator<Byte> iterator)
+    public static int read4Bytes(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            int result=0;
-            byte b;
-
-            b = iterator.next();
-            result|=(0xFF&(int)b)<<24;
-            b = iterator.next();
-            result|=(0xFF&(int)b)<<16;
-            b = iterator.next();
-            result|=(0xFF&(int)b)<<8;
-            b = iterator.next();
-            result|=(0xFF&(int)b);
-
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        int result=0;
+        byte b;
+
+        b = message.read();
+        result|=(0xFF&(int)b)<<24;
+        b = message.read();
+        result|=(0xFF&(int)b)<<16;
+        b = message.read();
+        result|=(0xFF&(int)b)<<8;
+        b = message.read();
+        result|=(0xFF&(int)b);
+
+        return result;
     }
     
     //Read value from this message
-    public static long read8Bytes(Iterator<Byte> iterator)
+    public static long read8Bytes(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            long result=0L;
-            byte b;
-
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<56;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<48;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<40;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<32;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<24;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<16;
-            b = iterator.next();
-            result|=(0xFFL&(long)b)<<8;
-            b = iterator.next();
-            result|=(0xFFL&(long)b);
-
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        long result=0L;
+        byte b;
+
+        b = message.read();
+        result|=(0xFFL&(long)b)<<56;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<48;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<40;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<32;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<24;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<16;
+        b = message.read();
+        result|=(0xFFL&(long)b)<<8;
+        b = message.read();
+        result|=(0xFFL&(long)b);
+
+        return result;
     }
     
     //Read value from this message
-    public static String readCString(Iterator<Byte> iterator)
+    public static String readCString(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-
-            final StringBuffer stringBuffer
-                = new StringBuffer();
+        final StringBuffer stringBuffer
+            = new StringBuffer();
 
-            byte b;
+        byte b;
 
-            while((b=iterator.next())!=0)
-                stringBuffer.append((char)b);
+        while((b=message.read())!=0)
+            stringBuffer.append((char)b);
 
-            return stringBuffer.toString();
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        return stringBuffer.toString();
     }
 
     //Read value from this message
-    public static java.util.Vector<Byte> readBinary(Iterator<Byte> iterator)
+    public static MessageBuffer readBinary(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            final int incomingMessageLength
-                = Message.read2Bytes(iterator);
+        final int incomingMessageLength
+            = 0xFFFF & Message.read2Bytes(message);
 
-            java.util.Vector<Byte> result = new java.util.Vector<Byte>();
+        if(incomingMessageLength>message.remaining())
+            throw new MessageDeserializationException("End of message.");
 
-            for(int i=0;i<incomingMessageLength;i++)
-                result.add(iterator.next());
+        final MessageBuffer result
+            = new MessageBuffer(incomingMessageLength);
+        result.append(message.array(),
+                      message.arrayOffset()+message.position(),
+                      incomingMessageLength);
+        message.skip(incomingMessageLength);
 
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        return result;
     }
 
     //Read value from this message
-    public static java.util.Vector<Byte> readVector(Iterator<Byte> iterator)
+    public static java.util.Vector<Byte> readVector(final MessageBuffer message)
         throws MessageDeserializationException
     {
-        try{
-            final int incomingMessageLength
-                = Message.read2Bytes(iterator);
+        final int incomingMessageLength
+            = Message.read2Bytes(message);
 
-            java.util.Vector<Byte> result = new java.util.Vector<Byte>();
+        java.util.Vector<Byte> result = new java.util.Vector<Byte>();
             
-            for(int i=0;i<incomingMessageLength;i++)
-                result.add(Message.read1Byte(iterator));
+        for(int i=0;i<incomingMessageLength;i++)
+            result.add(Message.read1Byte(message));
 
-            return result;
-        }catch(final NoSuchElementException e){
-            throw new MessageDeserializationException(e);
-        }
+        return result;
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static byte read1Byte(final MessageBuffer message,final int index){
+        return message.get(index);
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static short read2Bytes(final MessageBuffer message,final int index){
+        return (short)(((0xFF&message.get(index))<<8)
+                       |(0xFF&message.get(index+1)));
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static int read3Bytes(final MessageBuffer message,final int index){
+        return ((0xFF&message.get(index))<<16)
+            |((0xFF&message.get(index+1))<<8)
+            |(0xFF&message.get(index+2));
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static int read4Bytes(final MessageBuffer message,final int index){
+        return ((0xFF&message.get(index))<<24)
+            |((0xFF&message.get(index+1))<<16)
+            |((0xFF&message.get(index+2))<<8)
+            |(0xFF&message.get(index+3));
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static long read8Bytes(final MessageBuffer message,final int index){
+        return ((0xFFFFFFFFL&read4Bytes(message,index))<<32)
+            |(0xFFFFFFFFL&read4Bytes(message,index+4));
+    }
+
+    //Read value at index of a MessageBuffer, ignoring read cursor
+    public static String readCString(final MessageBuffer message,final int index){
+        final StringBuffer stringBuffer
+            = new StringBuffer();
+
+        byte b;
+        for(int i=index;(b=message.get(i))!=0;i++)
+            stringBuffer.append((char)b);
+
+        return stringBuffer.toString();
+    }
+
+    //Length of binary (or vector of bytes) piece at index
+    public static int readBinaryLength(final MessageBuffer message,final int index){
+        return 0xFFFF & read2Bytes(message,index);
+    }
+
+    //Index just past the C string starting at index, or -1 if it
+    //isn't terminated before end.
+    public static int skipCString(final MessageBuffer message,
+                                  final int index,
+                                  final int end){
+        for(int i=index;i<end;i++)
+            if(message.get(i)==0)
+                return i+1;
+        return -1;
+    }
+
+    //Index just past the binary piece starting at index, or -1 if
+    //it doesn't fit before end.
+    public static int skipBinary(final MessageBuffer message,
+                                 final int index,
+                                 final int end){
+        if(index+2>end)
+            return -1;
+        final int next = index+2+readBinaryLength(message,index);
+        return next>end?-1:next;
     }
 
     //Represent this message as string
-    public static String toString(final Vector<Byte> message){
+    public static String toString(final MessageBuffer message){
 
         final char[] hex =
             {'0','1','2','3','4','5','6','7',
@@ -0,0 +1,200 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+
+import java.util.*;
+
+/** Serialized message. It's a growable array of primitive bytes,
+ * so appending or reading a byte doesn't create any objects. Bytes
+ * are appended at the end and read using an explicit read cursor.
+ *
+ * A MessageBuffer can also be a view of a region of some other
+ * array (see wrap(...)), e.g. a game move inside of a received
+ * MOVE_MADE message. Appending to such a view copies the region
+ * first, so the original array is never modified.
+ */
+public class MessageBuffer{
+
+    private byte[] data;
+    //The message occupies data[offset,offset+size):
+    private int offset;
+    private int size;
+    //Read cursor, relative to offset:
+    private int position;
+    //Is data owned by some other object?
+    private boolean shared;
+
+    public MessageBuffer(){
+        this(16);
+    }
+
+    public MessageBuffer(final int capacity){
+        this.data = new byte[capacity];
+        this.offset = 0;
+        this.size = 0;
+        this.position = 0;
+        this.shared = false;
+    }
+
+    /** Wraps rawData without copying it. */
+    public MessageBuffer(final byte[] rawData){
+        this.wrap(rawData,0,rawData.length);
+    }
+
+    /** Adapter for code still representing messages as Vector<Byte>. */
+    public MessageBuffer(final Vector<Byte> rawData){
+        this(rawData.size());
+        for(int i=0;i<rawData.size();i++)
+            this.data[i]=rawData.get(i);
+        this.size = rawData.size();
+    }
+
+    /** Makes this buffer a view of data[offset,offset+size). The
+        read cursor is moved to the beginning. */
+    public void wrap(final byte[] data,
+                     final int offset,
+                     final int size){
+        this.data = data;
+        this.offset = offset;
+        this.size = size;
+        this.position = 0;
+        this.shared = true;
+    }
+
+    /** Removes all bytes, but keeps allocated memory. */
+    public void clear(){
+        if(this.shared){
+            this.data = new byte[16];
+            this.shared = false;
+        }
+        this.offset = 0;
+        this.size = 0;
+        this.position = 0;
+    }
+
+    public int size(){
+        return this.size;
+    }
+
+    /** @return Array backing this buffer. Message bytes start at
+        arrayOffset(). */
+    public byte[] array(){
+        return this.data;
+    }
+
+    public int arrayOffset(){
+        return this.offset;
+    }
+
+    public byte get(final int index){
+        return this.data[this.offset+index];
+    }
+
+    private void ensureCapacity(final int additional){
+        final int needed = this.size+additional;
+        if(!this.shared && this.offset+needed<=this.data.length)
+            return;
+        final byte[] newData
+            = new byte[Math.max(needed,2*this.data.length)];
+        System.arraycopy(this.data,this.offset,newData,0,this.size);
+        this.data = newData;
+        this.offset = 0;
+        this.shared = false;
+    }
+
+    public void append(final byte b){
+        this.ensureCapacity(1);
+        this.data[this.offset+this.size++] = b;
+    }
+
+    public void append(final byte[] bytes,
+                       final int from,
+                       final int length){
+        this.ensureCapacity(length);
+        System.arraycopy(bytes,from,this.data,this.offset+this.size,length);
+        this.size += length;
+    }
+
+    public void append(final MessageBuffer other){
+        this.append(other.data,other.offset,other.size);
+    }
+
+    //Reading:
+
+    /** Moves read cursor to the beginning of the message. */
+    public void rewind(){
+        this.position = 0;
+    }
+
+    public int position(){
+        return this.position;
+    }
+
+    public int remaining(){
+        return this.size-this.position;
+    }
+
+    /** Reads one byte and moves read cursor. */
+    public byte read()
+        throws MessageDeserializationException
+    {
+        if(this.position>=this.size)
+            throw new MessageDeserializationException("End of message.");
+        return this.data[this.offset+this.position++];
+    }
+
+    /** Moves read cursor forward by length bytes. */
+    public void skip(final int length)
+        throws MessageDeserializationException
+    {
+        if(length<0 || length>this.remaining())
+            throw new MessageDeserializationException("End of message.");
+        this.position += length;
+    }
+
+    public byte[] toArray(){
+        final byte[] result = new byte[this.size];
+        System.arraycopy(this.data,this.offset,result,0,this.size);
+        return result;
+    }
+
+    /** Adapter for code still representing messages as Vector<Byte>. */
+    public Vector<Byte> toVector(){
+        final Vector<Byte> result = new Vector<Byte>(this.size);
+        for(int i=0;i<this.size;i++)
+            result.add(this.data[this.offset+i]);
+        return result;
+    }
+}
@@ -40,5 +40,5 @@ import java.util.*;
 
 public interface MoveListener{
 
-    public boolean handle_1_MOVE_MADE(final Vector<Byte> move);
+    public boolean handle_1_MOVE_MADE(final MessageBuffer move);
 }
@@ -39,15 +39,53 @@ import javax.swing.*;
 
 public abstract class Receiver extends Thread{
 
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
     private final Socket socket;
     private final GeneralProtocol.GeneralHandler generalHandler;
+    private final FrameDecoder frameDecoder;
+
+    //Received messages waiting to be handled on the event dispatch
+    //thread, in order of arrival. It's a ring of reused buffers,
+    //guarded by this. When it's full, we stop reading the socket.
+    private final MessageBuffer[] queue;
+    private final GeneralProtocol.MessageType[] queueTypes;
+    private int queueHead;
+    private int queueSize;
+    //Is handleQueued scheduled on the event dispatch thread?
+    private boolean handlingScheduled;
+    //Is handleQueued running? Only used on the event dispatch
+    //thread:
+    private boolean handlingBatch;
+    private final Runnable handleQueued;
 
     public Receiver(final Socket socket,
                     final GeneralProtocol.GeneralHandler generalHandler,
                     final String nameSuffix){
+        this(socket,generalHandler,nameSuffix,DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public Receiver(final Socket socket,
+                    final GeneralProtocol.GeneralHandler generalHandler,
+                    final String nameSuffix,
+                    final int queueCapacity){
         super("RCV "+nameSuffix);
         this.socket = socket;
         this.generalHandler = generalHandler;
+        this.frameDecoder = new FrameDecoder(8192);
+        this.queue = new MessageBuffer[queueCapacity];
+        for(int i=0;i<queueCapacity;i++)
+            this.queue[i] = new MessageBuffer(64);
+        this.queueTypes = new GeneralProtocol.MessageType[queueCapacity];
+        this.queueHead = 0;
+        this.queueSize = 0;
+        this.handlingScheduled = false;
+        this.handlingBatch = false;
+        this.handleQueued = new Runnable(){
+                public void run(){
+                    handleQueued();
+                }
+            };
         if(socket != null)
             this.start();
     }
@@ -55,30 +93,105 @@ public abstract class Receiver extends Thread{
     public abstract void d(final String message);
     public abstract void e(final String message,final Throwable t);
 
+    /** Called on the event dispatch thread after a batch of
+     * messages has been handled, e.g. to redraw things once
+     * rather than after every message. */
+    public abstract void batchHandled();
+
+    /** Whether a batch of messages is being handled now, so
+     * batchHandled() will be called soon. Call it on the event
+     * dispatch thread. */
+    public boolean isHandlingBatch(){
+        return this.handlingBatch;
+    }
+
+    //Copies message to the queue, waiting while the queue is full.
+    private synchronized void enqueue(final MessageBuffer message,
+                                      final GeneralProtocol.MessageType messageType)
+        throws InterruptedException
+    {
+        while(this.queueSize==this.queue.length)
+            this.wait();
+
+        final int tail = (this.queueHead+this.queueSize)%this.queue.length;
+        this.queue[tail].clear();
+        this.queue[tail].append(message);
+        this.queueTypes[tail] = messageType;
+        this.queueSize++;
+
+        if(!this.handlingScheduled){
+            this.handlingScheduled = true;
+            SwingUtilities.invokeLater(this.handleQueued);
+        }
+    }
+
+    //Runs on the event dispatch thread. Handles everything queued
+    //so far, but not more than one queue-full at once, so painting
+    //isn't held up forever.
+    private void handleQueued(){
+        this.handlingBatch = true;
+        int handled = 0;
+        while(true){
+            final MessageBuffer message;
+            final GeneralProtocol.MessageType messageType;
+
+            synchronized(this){
+                if(this.queueSize==0){
+                    this.handlingScheduled = false;
+                    break;
+                }
+                if(handled==this.queue.length){
+                    SwingUtilities.invokeLater(this.handleQueued);
+                    break;
+                }
+                message = this.queue[this.queueHead];
+                messageType = this.queueTypes[this.queueHead];
+            }
+
+            if(!GeneralProtocol.handle(message,
+                                       messageType,
+                                       this.generalHandler)){
+                d("Message handling failed. Message type:"
+                  +messageType);
+                d("Message:");
+                d(Message.toString(message));
+            }
+
+            synchronized(this){
+                this.queueHead = (this.queueHead+1)%this.queue.length;
+                this.queueSize--;
+                this.notify();
+            }
+            handled++;
+        }
+        this.handlingBatch = false;
+        this.batchHandled();
+    }
+
     public void run(){
 
         try{
+            final java.io.InputStream stream
+                = this.socket.getInputStream();
+
             while(true){
 
-                //Receive message:
-                //TODO: Is Socket's buffer long enough for storing,
-                //say, 100 messages if handling takes a long time?
-                final Vector<Byte> message
-                    = transportReceive(this.socket);
-
-                //TODO: What if called twice before runnable invoked? What's
-                //the order?
-                SwingUtilities.invokeAndWait(new Runnable(){
-                        public void run() {
-                            if(!GeneralProtocol.handle(message,
-                                                       generalHandler)){
-                                d("Message handling failed. Message type:"
-                                  +GeneralProtocol.lookupMessageType(message));
-                                d("Message:");
-                                d(Message.toString(message));
-                            }
-                        }
-                    });
+                //Receive whatever is available, maybe several messages:
+                if(!this.frameDecoder.read(stream))
+                    throw new Exception("TransportProtocol.receive(...) EOF problem.");
+
+                MessageBuffer message;
+                while((message = this.frameDecoder.next())!=null){
+
+                    //Header is parsed only here:
+                    final GeneralProtocol.MessageType messageType
+                        = GeneralProtocol.lookupMessageType(message);
+
+                    d("TP.rcv "+messageType
+                      +" "+Message.toString(message));
+
+                    this.enqueue(message,messageType);
+                }
             }
         }catch(final SocketException e){
             d("Socket closed.");
@@ -88,36 +201,4 @@ public abstract class Receiver extends Thread{
         }
         d("Thread terminated.");
     }
-
-    private Vector<Byte> transportReceive(final Socket socket)
-        throws Exception
-    {
-        final java.io.InputStream stream
-            = socket.getInputStream();
-
-        final int firstByte = stream.read();
-        if(firstByte==-1)
-            throw new Exception("TransportProtocol.receive(...) EOF problem.");
-
-        final int secondByte = stream.read();
-        if(secondByte==-1)
-            throw new Exception("TransportProtocol.receive(...) EOF problem.");
-
-        final int incomingMessageLength
-            = (firstByte<<8)|secondByte;
-
-        final Vector<Byte> message = new Vector<Byte>();
-
-        for(int i=0;i<incomingMessageLength;i++){
-            final int b = stream.read();
-            if(b==-1)
-                throw new Exception("TransportProtocol.receive(...) EOF problem.");
-            message.add((byte)b);
-        }
-
-        d("TP.rcv "+GeneralProtocol.lookupMessageType(message)
-          +" "+Message.toString(message));
-        return message;
-    }
-
 }
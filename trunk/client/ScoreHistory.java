@@ -0,0 +1,76 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.util.*;
+
+/** Append-only history of scores, one row per deal, kept in a
+ * single growing int array.
+ */
+public class ScoreHistory{
+
+    private final int numberOfPlayers;
+    //Row r, player p is at r*numberOfPlayers+p:
+    private int[] rows;
+    private int numberOfRows;
+
+    public ScoreHistory(final int numberOfPlayers){
+        this.numberOfPlayers = numberOfPlayers;
+        this.rows = new int[16*numberOfPlayers];
+        this.numberOfRows = 0;
+    }
+
+    public int getNumberOfPlayers(){
+        return numberOfPlayers;
+    }
+
+    public int getNumberOfRows(){
+        return numberOfRows;
+    }
+
+    /** Total of the player after the row. */
+    public int get(final int row, final int player){
+        return rows[row*numberOfPlayers+player];
+    }
+
+    /** Saves totals of all players after a deal as a new row and
+        returns its index. The array isn't kept. */
+    public int addRow(final int[] totals){
+        final int offset = numberOfRows*numberOfPlayers;
+        if(offset+numberOfPlayers>rows.length)
+            rows = Arrays.copyOf(rows,2*rows.length);
+        System.arraycopy(totals,0,rows,offset,numberOfPlayers);
+        return numberOfRows++;
+    }
+}
@@ -0,0 +1,334 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+/** Transport handling many connections on a single thread. Unlike
+ * Sender and Receiver, which need two threads per socket, this
+ * class multiplexes non-blocking SocketChannels with a Selector.
+ * Messages are framed the same way (two bytes of length, then the
+ * message) and are handed over to GeneralProtocol.GeneralHandler.
+ *
+ * Handlers are called on the transport thread, not on the event
+ * dispatch thread, and messages passed to them are only valid
+ * during the call. A handler implementing ClosedHandler is told
+ * when its connection is closed by a problem or by the server.
+ */
+public abstract class SelectorTransport extends Thread{
+
+    private final Selector selector;
+    //Connections to be registered with the selector:
+    private final LinkedList<Connection> toBeRegistered;
+    //Connections having new output:
+    private final LinkedList<Connection> toBeWritten;
+    //Tasks to be run on the transport thread:
+    private final LinkedList<Runnable> toBeRun;
+    private volatile boolean quitting;
+
+    public SelectorTransport(final String nameSuffix)
+        throws IOException
+    {
+        super("SEL "+nameSuffix);
+        this.selector = Selector.open();
+        this.toBeRegistered = new LinkedList<Connection>();
+        this.toBeWritten = new LinkedList<Connection>();
+        this.toBeRun = new LinkedList<Runnable>();
+        this.quitting = false;
+        this.start();
+    }
+
+    public abstract void d(final String message);
+    public abstract void e(final String message,final Throwable t);
+
+    /** Implemented by handlers which need to know when their
+     * connection is closed other than by Connection.close(). */
+    public interface ClosedHandler{
+        /** Called on the transport thread. */
+        public void connectionClosed(final Exception cause);
+    }
+
+    /** One connection to the server. */
+    public final class Connection{
+
+        private final SocketChannel channel;
+        private final GeneralProtocol.GeneralHandler generalHandler;
+        private SelectionKey key;
+
+        private final FrameDecoder frameDecoder;
+        //Framed messages to be sent (in write mode, guarded by this):
+        private ByteBuffer output;
+        //Set by close(), later messages are dropped (guarded by this):
+        private boolean closed;
+        //Touched by transport thread only:
+        private boolean closedReported;
+
+        private Connection(final SocketChannel channel,
+                           final GeneralProtocol.GeneralHandler generalHandler){
+            this.channel = channel;
+            this.generalHandler = generalHandler;
+            this.frameDecoder = new FrameDecoder(1024);
+            this.output = ByteBuffer.allocate(1024);
+        }
+
+        /** Can be called from any thread. Messages sent after the
+            connection was closed are dropped. */
+        public void send(final MessageBuffer message){
+            final int length = message.size();
+            synchronized(this){
+                if(this.closed)
+                    return;
+                if(this.output.remaining()<2+length){
+                    final ByteBuffer bigger
+                        = ByteBuffer.allocate(Math.max(2*this.output.capacity(),
+                                                       this.output.position()+2+length));
+                    this.output.flip();
+                    bigger.put(this.output);
+                    this.output = bigger;
+                }
+                //Two first bytes transferred represent the length of the message.
+                this.output.put((byte)(0xFF&(length>>8)));
+                this.output.put((byte)(0xFF&length));
+                this.output.put(message.array(),message.arrayOffset(),length);
+            }
+            synchronized(SelectorTransport.this){
+                toBeWritten.addLast(this);
+            }
+            selector.wakeup();
+        }
+
+        /** Can be called from any thread. */
+        public void close(){
+            synchronized(this){
+                this.closed = true;
+                this.output.clear();
+            }
+            try{
+                this.channel.close();
+            }catch(final IOException e){
+                d("Problem closing connection: "+e);
+            }
+        }
+
+        //Called by transport thread when channel is readable.
+        private void read() throws IOException{
+            if(!this.frameDecoder.read(this.channel))
+                throw new ClosedChannelException();
+
+            MessageBuffer message;
+            while((message = this.frameDecoder.next())!=null){
+
+                //Header is parsed only here:
+                final GeneralProtocol.MessageType messageType
+                    = GeneralProtocol.lookupMessageType(message);
+
+                if(!GeneralProtocol.handle(message,
+                                           messageType,
+                                           this.generalHandler)){
+                    d("Message handling failed. Message type:"
+                      +messageType);
+                }
+            }
+        }
+
+        //Called by transport thread when channel is writable or
+        //new output has been queued.
+        private synchronized void write() throws IOException{
+            //Closed by another thread, key is cancelled:
+            if(this.closed)
+                return;
+            this.output.flip();
+            this.channel.write(this.output);
+            this.output.compact();
+
+            this.key.interestOps(this.output.position()>0
+                                 ?SelectionKey.OP_READ|SelectionKey.OP_WRITE
+                                 :SelectionKey.OP_READ);
+        }
+    }
+
+    /** Connects (blocking) and hands the connection over to the
+     * transport thread. Messages received will be passed to
+     * generalHandler. */
+    public Connection connect(final SocketAddress address,
+                              final GeneralProtocol.GeneralHandler generalHandler)
+        throws IOException
+    {
+        final SocketChannel channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        final Connection connection = new Connection(channel,generalHandler);
+        synchronized(this){
+            this.toBeRegistered.addLast(connection);
+        }
+        this.selector.wakeup();
+        return connection;
+    }
+
+    /** Runs task on the transport thread, so it can touch what
+     * handlers touch. Can be called from any thread. */
+    public void invokeLater(final Runnable task){
+        synchronized(this){
+            this.toBeRun.addLast(task);
+        }
+        this.selector.wakeup();
+    }
+
+    public void quit(){
+        this.quitting = true;
+        this.selector.wakeup();
+    }
+
+    private synchronized Connection pollToBeRegistered(){
+        return this.toBeRegistered.poll();
+    }
+
+    private synchronized Connection pollToBeWritten(){
+        return this.toBeWritten.poll();
+    }
+
+    private synchronized Runnable pollToBeRun(){
+        return this.toBeRun.poll();
+    }
+
+    //Closes connection after a problem, and tells its handler once:
+    private void closed(final Connection connection,final Exception cause){
+        final boolean closedByOwner;
+        synchronized(connection){
+            closedByOwner = connection.closed;
+        }
+        if(connection.key!=null)
+            connection.key.cancel();
+        connection.close();
+        if(connection.closedReported)
+            return;
+        connection.closedReported = true;
+        //Whoever called close() knows already:
+        if(closedByOwner)
+            return;
+        d("Connection closed: "+cause);
+        if(connection.generalHandler instanceof ClosedHandler){
+            try{
+                ((ClosedHandler)connection.generalHandler).connectionClosed(cause);
+            }catch(final RuntimeException e){
+                e("Problem handling closed connection.",e);
+            }
+        }
+    }
+
+    //Problems of one connection don't stop the others:
+    private void failed(final Connection connection,final RuntimeException e){
+        e("Problem handling connection.",e);
+        this.closed(connection,e);
+    }
+
+    public void run(){
+        try{
+            while(!this.quitting){
+                this.selector.select();
+
+                Connection connection;
+                while((connection = this.pollToBeRegistered())!=null){
+                    //Messages might have been sent before registration:
+                    try{
+                        connection.key = connection.channel.register
+                            (this.selector,SelectionKey.OP_READ,connection);
+                        connection.write();
+                    }catch(final IOException e){
+                        this.closed(connection,e);
+                    }catch(final RuntimeException e){
+                        this.failed(connection,e);
+                    }
+                }
+
+                Runnable task;
+                while((task = this.pollToBeRun())!=null){
+                    try{
+                        task.run();
+                    }catch(final RuntimeException e){
+                        e("Task failed.",e);
+                    }
+                }
+
+                while((connection = this.pollToBeWritten())!=null){
+                    //Not registered yet or already closed:
+                    if(connection.key==null || !connection.key.isValid())
+                        continue;
+                    try{
+                        connection.write();
+                    }catch(final IOException e){
+                        this.closed(connection,e);
+                    }catch(final RuntimeException e){
+                        this.failed(connection,e);
+                    }
+                }
+
+                final Iterator<SelectionKey> iterator
+                    = this.selector.selectedKeys().iterator();
+                while(iterator.hasNext()){
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+                    connection = (Connection)key.attachment();
+
+                    try{
+                        if(key.isValid() && key.isReadable())
+                            connection.read();
+                        if(key.isValid() && key.isWritable())
+                            connection.write();
+                    }catch(final IOException e){
+                        this.closed(connection,e);
+                    }catch(final RuntimeException e){
+                        this.failed(connection,e);
+                    }
+                }
+            }
+        }catch(final Exception e){
+            e("Unexpected problem.",e);
+        }
+
+        for(SelectionKey key : this.selector.keys())
+            ((Connection)key.attachment()).close();
+        try{
+            this.selector.close();
+        }catch(final IOException e){
+            d("Problem closing selector: "+e);
+        }
+        d("Thread terminated.");
+    }
+}
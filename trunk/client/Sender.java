@@ -39,13 +39,19 @@ import java.util.*;
 public abstract class Sender extends Thread{
 
     private final Socket socket;
-    private final LinkedList< Vector<Byte> > messages;
+    private final LinkedList<MessageBuffer> messages;
+    //Messages taken from the queue in one go:
+    private final ArrayList<MessageBuffer> batch;
+    //Frames of the whole batch, reused between batches:
+    private final MessageBuffer frames;
 
     public Sender(final Socket socket,
                   final String nameSuffix){
         super("SND "+nameSuffix);
         this.socket = socket;
-        this.messages = new LinkedList< Vector<Byte> >();
+        this.messages = new LinkedList<MessageBuffer>();
+        this.batch = new ArrayList<MessageBuffer>();
+        this.frames = new MessageBuffer(1024);
         this.start();
     }
 
@@ -57,23 +63,30 @@ public abstract class Sender extends Thread{
         this.notify();
     }
 
-    public synchronized void send(final Vector<Byte> message){
+    public synchronized void send(final MessageBuffer message){
         this.messages.addLast(message);
         this.notify();
     }
 
-    private synchronized Vector<Byte> get() throws InterruptedException{
+    //Moves all queued messages to batch. Returns false if
+    //we should quit.
+    private synchronized boolean drain(final List<MessageBuffer> batch)
+        throws InterruptedException
+    {
         while(this.messages.size()==0 || this.socket==null)
             this.wait();
-        return messages.removeFirst();
+        while(!this.messages.isEmpty()
+              && this.messages.getFirst()!=null)
+            batch.add(this.messages.removeFirst());
+        return !batch.isEmpty();
     }
 
     public void run(){
 
         try{
-            Vector<Byte> message;
-            while((message = this.get())!=null){
-                this.transportSend(message,this.socket);
+            while(this.drain(this.batch)){
+                this.transportSend(this.batch,this.socket);
+                this.batch.clear();
             }
             d("Normal loop termination.");
         }catch(final InterruptedException e){
@@ -87,25 +100,31 @@ public abstract class Sender extends Thread{
         d("Sender terminated.");
     }
 
-    public void transportSend(final Vector<Byte> message,
+    //Frames all messages into one buffer, so the whole batch goes
+    //out with one write and one flush.
+    public void transportSend(final List<MessageBuffer> messages,
                               final Socket socket)
         throws java.io.IOException
     {
-        d("TP.snd "+GeneralProtocol.lookupMessageType(message)
-          +" "+Message.toString(message));
+        this.frames.clear();
+
+        for(MessageBuffer message : messages){
+            d("TP.snd "+GeneralProtocol.lookupMessageType(message)
+              +" "+Message.toString(message));
+
+            //Two first bytes transferred represent the length of the message.
+            final int length = message.size();
+            this.frames.append((byte)(0xFF&(length>>8)));
+            this.frames.append((byte)(0xFF&length));
+            this.frames.append(message);
+        }
 
-        final Vector<Byte> bytes
-            = message;
-        
         final java.io.OutputStream stream
             = socket.getOutputStream();
-        
-        //Two first bytes transferred represent the length of the message.
-        final int length = bytes.size();
-        stream.write(0xFF&(length>>8));
-        stream.write(0xFF&length);
-        for(int i=0;i<length;i++)
-            stream.write(bytes.get(i));
+
+        stream.write(this.frames.array(),
+                     this.frames.arrayOffset(),
+                     this.frames.size());
         //TODO: Is it OK to do it?
         stream.flush();
     }
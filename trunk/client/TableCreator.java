@@ -54,6 +54,7 @@ public abstract class TableCreator implements GeneralProtocol.GeneralHandler{
         this.receiver = new Receiver(socket,this,""){
                 public void d(final String s){me.d(s);}
                 public void e(final String s,final Throwable t){me.e(s,t);}
+                public void batchHandled(){}
             };
         this.queue = new LinkedBlockingQueue<Long>();
     }
@@ -95,7 +96,7 @@ public abstract class TableCreator implements GeneralProtocol.GeneralHandler{
         d("Debug mode enabled.");
 
         d("Serializing message...");
-        final Vector<Byte> query
+        final MessageBuffer query
             = GeneralProtocol.serialize_1_CREATE_THOUSAND_TABLE();
 
         d("Message serialized: "+query);
@@ -125,7 +126,7 @@ public abstract class TableCreator implements GeneralProtocol.GeneralHandler{
     }
 
     public boolean handle_1_SAID(final byte tablePlayerId,
-                                 final java.util.Vector<Byte> text_UTF8){return false;}
+                                 final MessageBuffer text_UTF8){return false;}
     public boolean handle_1_YOU_JOINED_TABLE(final byte tablePlayerId){return false;}
     public boolean handle_1_JOINING_TABLE_FAILED_INCORRECT_TABLE_ID(){return false;}
     public boolean handle_1_NEW_PLAYER_JOINED_TABLE(final String screenName,
@@ -133,6 +134,6 @@ public abstract class TableCreator implements GeneralProtocol.GeneralHandler{
     public boolean handle_1_PLAYER_LEFT_TABLE(final byte tablePlayerId){return false;}
     public boolean handle_1_GAME_STARTED_WITHOUT_INITIAL_MESSAGE(final java.util.Vector<Byte> turnGamePlayerToTablePlayerId){return false;}
     public boolean handle_1_GAME_STARTED_WITH_INITIAL_MESSAGE(final java.util.Vector<Byte> turnGamePlayerToTablePlayerId,
-                                                              final java.util.Vector<Byte> initialMessage){return false;}
-    public boolean handle_1_MOVE_MADE(final java.util.Vector<Byte> gameMove){return false;}
+                                                              final MessageBuffer initialMessage){return false;}
+    public boolean handle_1_MOVE_MADE(final MessageBuffer gameMove){return false;}
 }
@@ -0,0 +1,518 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Computer player for Thousand. Cards are played by sampling
+ * hidden hands consistent with what has been seen so far (own
+ * cards, shown must, passed and played cards, suits players
+ * couldn't follow) and solving each sample with ThousandSolver.
+ * Samples are solved in parallel until the time for a move runs
+ * out. Bidding and passing cards use simple rules.
+ *
+ * Plugs into HeadlessPlayer as an AsyncGameLogic, so the search
+ * runs on the pool and doesn't block the transport thread.
+ */
+public class ThousandBot implements AsyncGameLogic{
+
+    private static final int ALL_CARDS = 0xFFFFFF;
+
+    //Shared by all bots, threads die with the program:
+    private static final ExecutorService executor
+        = Executors.newFixedThreadPool
+        (Runtime.getRuntime().availableProcessors(),
+         new ThreadFactory(){
+             public Thread newThread(final Runnable runnable){
+                 final Thread thread = new Thread(runnable,"ThousandBot");
+                 thread.setDaemon(true);
+                 return thread;
+             }
+         });
+
+    //Transposition tables stay valid between moves and samples,
+    //so each pool thread keeps its solver:
+    private static final ThreadLocal<ThousandSolver> solvers
+        = new ThreadLocal<ThousandSolver>(){
+            protected ThousandSolver initialValue(){
+                return new ThousandSolver();
+            }
+        };
+
+    private final ThousandGame game;
+    private final long moveTimeNanos;
+    private final int numberOfWorkers;
+    private final Random random;
+
+    //What we know about cards in the current deal:
+    private int played;
+    private final int[] knownCards;
+    //Suits each player doesn't have, as card masks:
+    private final int[] voids;
+
+    /**
+       @param moveTimeMillis Time to think about one card.
+       @param numberOfWorkers How many samples are solved at once. */
+    public ThousandBot(final long moveTimeMillis,
+                       final int numberOfWorkers,
+                       final Random random){
+        this.game = new ThousandGame(random);
+        this.moveTimeNanos = moveTimeMillis*1000000L;
+        this.numberOfWorkers = numberOfWorkers;
+        this.random = random;
+        this.knownCards = new int[3];
+        this.voids = new int[3];
+    }
+
+    public ThousandBot(){
+        this(1000,Runtime.getRuntime().availableProcessors(),new Random());
+    }
+
+    public byte getNumberOfPlayers(){
+        return game.getNumberOfPlayers();
+    }
+
+    private void newDeal(){
+        played = 0;
+        Arrays.fill(knownCards,0);
+        Arrays.fill(voids,0);
+    }
+
+    public boolean initialize(final Table table,
+                              final MessageBuffer initialMessage){
+        newDeal();
+        return game.initialize(table,initialMessage);
+    }
+
+    public boolean serverEchoes(final MessageBuffer move){
+        return game.serverEchoes(move);
+    }
+
+    private static int suitMask(final byte shift){
+        return 0x3F<<(6*(shift/6));
+    }
+
+    //The other card of a marriage:
+    private static byte partner(final byte shift){
+        return (byte)(shift%6==ThousandProtocol.QUEEN_SHIFT?shift+1:shift-1);
+    }
+
+    //Learns about hidden cards from a card played by player:
+    private void cardPlayed(final byte player,
+                            final byte shift){
+        played |= (1<<shift);
+        knownCards[player] &= ~(1<<shift);
+        if(game.getStage()==ThousandGame.Stage.PLAYING_SECOND)
+            return;
+
+        //Didn't follow suit:
+        final byte firstShift = game.getFirstShift();
+        final byte trumpShift = game.getTrumpShift();
+        if(suitMask(shift)!=suitMask(firstShift)){
+            voids[player] |= suitMask(firstShift);
+            //Nor played a trump:
+            if(trumpShift!=ThousandProtocol.NO_TRUMP_SHIFT
+               && suitMask(shift)!=(0x3F<<trumpShift))
+                voids[player] |= (0x3F<<trumpShift);
+        }
+    }
+
+    public int moveMade(final MessageBuffer move,
+                        final int[] endResult){
+        final ThousandGame.Stage stage = game.getStage();
+        final byte player = game.getTurn();
+        final byte me = game.getMyTurnGamePlayer();
+        final int myCards = game.getCards(me);
+        final byte trumpShift = game.getTrumpShift();
+
+        final int moveResult = game.moveMade(move,endResult);
+        if((moveResult&VALIDITY_MASK)!=VALID)
+            return moveResult;
+
+        switch(stage){
+        case BIDDING:
+            //Must taken by someone else is known if shown:
+            if(game.getStage()==ThousandGame.Stage.SELECTING_FIRST
+               && game.getBiddingWinner()!=me)
+                knownCards[game.getBiddingWinner()] = game.getMust();
+            break;
+        case SELECTING_FIRST:
+        case SELECTING_SECOND:
+            //We know where our cards went:
+            if(player==me){
+                final byte receiver
+                    = (byte)((me+(stage==ThousandGame.Stage.SELECTING_FIRST
+                                  ?1:2))%3);
+                knownCards[receiver] |= myCards & ~game.getCards(me);
+            }
+            //Cards we got aren't in the must taker's hand any more:
+            knownCards[player] &= ~game.getCards(me);
+            //Card passed to the other opponent could be any of them:
+            if(player!=me && game.getCards(me)==myCards)
+                knownCards[player] = 0;
+            break;
+        case PLAYING_FIRST:
+            cardPlayed(player,game.getFirstShift());
+            //Declaring marriage shows the other card:
+            if(player!=me && game.getTrumpShift()!=trumpShift)
+                knownCards[player] |= (1<<partner(game.getFirstShift()));
+            break;
+        case PLAYING_SECOND:
+            cardPlayed(player,game.getSecondShift());
+            break;
+        case PLAYING_THIRD:
+            if(game.getStage()==ThousandGame.Stage.BIDDING)
+                newDeal();
+            else
+                cardPlayed(player,game.getThirdShift());
+            break;
+        default:
+        }
+        return moveResult;
+    }
+
+    private static int pointsOf(final int cards){
+        final ThousandCardSet set = new ThousandCardSet();
+        set.value = cards;
+        return set.points();
+    }
+
+    /** Bid for the player to move: the minimum if her cards are
+        worth it, otherwise pass. */
+    public static byte bid10(final ThousandGame game){
+        final byte minimum = game.getMinimumNextBid10();
+        if(minimum<=ThousandHandEvaluator.bid10Hint(game.getCards(game.getTurn()),false))
+            return minimum;
+        return 0;
+    }
+
+    /** Contract for bidding winner: as much as her cards are worth
+        now that she has must, but at least her bid. */
+    public static byte contract10(final ThousandGame game){
+        final byte bid10 = game.getBid10(game.getTurn());
+        final byte hint
+            = ThousandHandEvaluator.bid10Hint(game.getCards(game.getTurn()),true);
+        return (hint>bid10 ? hint : bid10);
+    }
+
+    /** Cheapest card which isn't a part of marriage. */
+    public static byte cardToPass(final int cards){
+        byte best = -1;
+        int bestCost = Integer.MAX_VALUE;
+        for(int rest = cards; rest!=0; rest &= rest-1){
+            final byte shift = (byte)Integer.numberOfTrailingZeros(rest);
+            final int valueShift = shift%6;
+            final boolean marriage
+                = (valueShift==ThousandProtocol.QUEEN_SHIFT
+                   || valueShift==ThousandProtocol.KING_SHIFT)
+                && (cards & (1<<partner(shift)))!=0;
+            final int cost = pointsOf(1<<shift) + (marriage?100:0);
+            if(cost<bestCost){
+                bestCost = cost;
+                best = shift;
+            }
+        }
+        return best;
+    }
+
+    public MessageBuffer nextMove(){
+        if(!game.myTurn())
+            return null;
+        switch(game.getStage()){
+        case BIDDING:
+            return ThousandProtocol.serialize_1_BID(bid10(game));
+        case SELECTING_FIRST:
+        case SELECTING_SECOND:
+            return ThousandProtocol.serialize_1_SELECT
+                (cardToPass(game.getCards(game.getTurn())));
+        case CONTRACTING:
+            return ThousandProtocol.serialize_1_CONTRACT(contract10(game));
+        case PLAYING_FIRST:
+        case PLAYING_SECOND:
+        case PLAYING_THIRD:
+            return waitForCard();
+        default:
+            return null;
+        }
+    }
+
+    public boolean nextMove(final MoveCallback callback){
+        if(!game.myTurn())
+            return false;
+        switch(game.getStage()){
+        case PLAYING_FIRST:
+        case PLAYING_SECOND:
+        case PLAYING_THIRD:
+            playCard(callback);
+            return true;
+        default:
+            //Other moves are quick:
+            final MessageBuffer move = nextMove();
+            if(move==null)
+                return false;
+            callback.moveChosen(move);
+            return true;
+        }
+    }
+
+    //Blocks for the whole search, for callers of plain nextMove():
+    private MessageBuffer waitForCard(){
+        final MessageBuffer[] move = new MessageBuffer[1];
+        final Throwable[] failure = new Throwable[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        playCard(new MoveCallback(){
+                public void moveChosen(final MessageBuffer chosen){
+                    move[0] = chosen;
+                    done.countDown();
+                }
+                public void moveFailed(final Throwable t){
+                    failure[0] = t;
+                    done.countDown();
+                }
+            });
+        try{
+            done.await();
+        }catch(final InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if(failure[0]!=null)
+            throw new RuntimeException("Choosing card failed.",failure[0]);
+        return move[0];
+    }
+
+    /** Deals hidden cards to opponents at random, respecting what
+        we know. */
+    private static final class Sampler{
+        private final byte me;
+        private final byte first;
+        private final byte second;
+        private final int hidden;
+        private final int[] known;
+        private final int[] voids;
+        private final int firstNeeds;
+        private final Random random;
+
+        Sampler(final byte me,
+                final int hidden,
+                final int[] known,
+                final int[] voids,
+                final int firstNeeds,
+                final Random random){
+            this.me = me;
+            this.first = (byte)((me+1)%3);
+            this.second = (byte)((me+2)%3);
+            this.hidden = hidden;
+            this.known = known;
+            this.voids = voids;
+            this.firstNeeds = firstNeeds;
+            this.random = random;
+        }
+
+        //Fills cards of both opponents.
+        void sample(final int[] cards){
+            int forFirst = hidden & voids[second];
+            final int forSecond = hidden & voids[first];
+            int free = hidden & ~forFirst & ~forSecond;
+            int needs = firstNeeds - Integer.bitCount(forFirst);
+            //Inconsistent voids, ignore them:
+            if(needs<0 || needs>Integer.bitCount(free)){
+                forFirst = 0;
+                free = hidden;
+                needs = firstNeeds;
+            }
+            //Pick needs free cards at random:
+            int picked = 0;
+            for(int left = Integer.bitCount(free); needs>0; left--){
+                final byte shift = (byte)Integer.numberOfTrailingZeros(free);
+                free &= free-1;
+                if(random.nextInt(left)<needs){
+                    picked |= (1<<shift);
+                    needs--;
+                }
+            }
+            cards[first] = known[first] | forFirst | picked;
+            cards[second] = known[second] | (hidden & ~cards[first]);
+        }
+    }
+
+    //Starts the search. Everything workers need is copied first,
+    //so the game can go on meanwhile. Last worker to finish
+    //chooses the card.
+    private void playCard(final MoveCallback callback){
+        final byte me = game.getTurn();
+        final int legal = game.playableShifts();
+        if(Integer.bitCount(legal)==1){
+            callback.moveChosen(ThousandProtocol.serialize_1_PLAY
+                                ((byte)Integer.numberOfTrailingZeros(legal)));
+            return;
+        }
+
+        final byte first = (byte)((me+1)%3);
+        final byte second = (byte)((me+2)%3);
+        final int[] known = {0,
+                             knownCards[first] & ~played,
+                             knownCards[second] & ~played};
+        final int[] sampleKnown = new int[3];
+        sampleKnown[first] = known[1];
+        sampleKnown[second] = known[2];
+        final int hidden = ALL_CARDS & ~played & ~game.getCards(me)
+            & ~known[1] & ~known[2];
+        final int firstNeeds
+            = game.getNumberOfCards(first)-Integer.bitCount(known[1]);
+
+        final int trickPosition
+            = game.getStage().ordinal()-ThousandGame.Stage.PLAYING_FIRST.ordinal();
+        final short[] smallPoints = new short[3];
+        for(int p=0; p<3; p++)
+            smallPoints[p] = game.getSmallPoints(p);
+        final int myCards = game.getCards(me);
+        final byte firstShift = game.getFirstShift();
+        final byte secondShift = game.getSecondShift();
+        final byte trumpShift = game.getTrumpShift();
+        final byte declarer = game.getBiddingWinner();
+        final int[] voidsCopy = voids.clone();
+        final long deadline = System.nanoTime()+moveTimeNanos;
+
+        //Each worker adds sums of values by card, and number of
+        //samples at index 24:
+        final Search search
+            = new Search(legal,me==declarer,numberOfWorkers,callback);
+        for(int w=0; w<numberOfWorkers; w++){
+            final long seed = random.nextLong();
+            executor.execute(new Runnable(){
+                    public void run(){
+                        final long[] sums = new long[25];
+                        try{
+                            final Sampler sampler
+                                = new Sampler(me,hidden,sampleKnown,voidsCopy,
+                                              firstNeeds,new Random(seed));
+                            final ThousandSolver solver = solvers.get();
+                            final int[] cards = new int[3];
+                            final long[] values = new long[24];
+                            cards[me] = myCards;
+                            sampling:
+                            while(System.nanoTime()-deadline<0){
+                                sampler.sample(cards);
+                                solver.setPosition(cards,me,trickPosition,
+                                                   firstShift,secondShift,
+                                                   trumpShift,smallPoints,
+                                                   declarer);
+                                for(int rest = legal; rest!=0; rest &= rest-1){
+                                    final byte shift
+                                        = (byte)Integer.numberOfTrailingZeros(rest);
+                                    final int value = solver.value(shift,deadline);
+                                    if(value<0)
+                                        break sampling;
+                                    values[shift] = value;
+                                }
+                                for(int shift=0; shift<24; shift++)
+                                    sums[shift] += values[shift];
+                                sums[24]++;
+                            }
+                        }catch(final RuntimeException e){
+                            search.workerDone(null,e);
+                            return;
+                        }
+                        search.workerDone(sums,null);
+                    }
+                });
+        }
+    }
+
+    /** Collects sums of all workers of one search. */
+    private static final class Search{
+        private final int legal;
+        private final boolean declarer;
+        private final MoveCallback callback;
+        private final long[] sums;
+        private int workersLeft;
+        private Throwable failure;
+
+        Search(final int legal,
+               final boolean declarer,
+               final int numberOfWorkers,
+               final MoveCallback callback){
+            this.legal = legal;
+            this.declarer = declarer;
+            this.callback = callback;
+            this.sums = new long[25];
+            this.workersLeft = numberOfWorkers;
+        }
+
+        void workerDone(final long[] workerSums,
+                        final Throwable workerFailure){
+            synchronized(this){
+                if(workerSums!=null)
+                    for(int i=0; i<25; i++)
+                        sums[i] += workerSums[i];
+                if(workerFailure!=null && failure==null)
+                    failure = workerFailure;
+                if(--workersLeft>0)
+                    return;
+            }
+            //A failed worker means a bug, don't hide it:
+            if(failure!=null)
+                callback.moveFailed(failure);
+            else
+                callback.moveChosen(ThousandProtocol.serialize_1_PLAY(best()));
+        }
+
+        private byte best(){
+            //No sample solved in time. Cheapest card will do:
+            if(sums[24]==0){
+                byte cheapest = -1;
+                for(int rest = legal; rest!=0; rest &= rest-1){
+                    final byte shift = (byte)Integer.numberOfTrailingZeros(rest);
+                    if(cheapest==-1 || pointsOf(1<<shift)<pointsOf(1<<cheapest))
+                        cheapest = shift;
+                }
+                return cheapest;
+            }
+
+            //Declarer wants many points, opponents few:
+            byte best = -1;
+            for(int rest = legal; rest!=0; rest &= rest-1){
+                final byte shift = (byte)Integer.numberOfTrailingZeros(rest);
+                if(best==-1
+                   || (declarer
+                       ? sums[shift]>sums[best]
+                       : sums[shift]<sums[best]))
+                    best = shift;
+            }
+            return best;
+        }
+    }
+}
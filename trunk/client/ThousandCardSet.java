@@ -95,13 +95,79 @@ public class ThousandCardSet{
         value &= (~(1<<shift));
     }
 
+    /** Sum of points of all cards in the set. */
+    public short points(){
+        short result = 0;
+        for(int rest = value; rest!=0; rest &= rest-1)
+            result += points[Integer.numberOfTrailingZeros(rest)];
+        return result;
+    }
+
+    /** Sum of points of all marriages (queen and king of the same
+        suit) in the set. */
+    public short marriagePoints(){
+        short result = 0;
+        //Queens having a king just above them:
+        for(int rest = value & (value>>1) & (0x041041<<ThousandProtocol.QUEEN_SHIFT);
+            rest!=0;
+            rest &= rest-1)
+            result += marriagePoints[Integer.numberOfTrailingZeros(rest)];
+        return result;
+    }
+
+    //Result of removeFirstShiftPacked and removeThirdShiftPacked:
+    //bits 0-8 points won, 9-10 winner offset, 11-15 trump after the
+    //card, 16 validity.
+    public static final int PLAY_VALID = 1<<16;
+
+    /** Whether the card could be played. */
+    public static boolean playValid(final int result){
+        return (result&PLAY_VALID)!=0;
+    }
+
+    /** Points for a marriage (first card) or for the trick (third
+        card), to be added to small points of the winner. */
+    public static short playPoints(final int result){
+        return (short)(result&0x1FF);
+    }
+
+    /** Who takes the trick, counted forward from the player of the
+        third card: 0 is herself, 1 is first, 2 is second. */
+    public static byte playWinnerOffset(final int result){
+        return (byte)((result>>>9)&0x3);
+    }
+
+    /** Trump after the first card was played. */
+    public static byte playTrumpShift(final int result){
+        return (byte)((result>>>11)&0x1F);
+    }
+
+    private static int packTrick(final int points,
+                                 final int winnerOffset,
+                                 final boolean valid){
+        return points | (winnerOffset<<9) | (valid ? PLAY_VALID : 0);
+    }
+
     public boolean removeFirstShift(final byte shift,
                                     B trumpShift,
                                     S firstSmallPoints)
+    {
+        final int result = removeFirstShiftPacked(shift,trumpShift.value);
+        if(!playValid(result))
+            return false;
+        firstSmallPoints.value+=playPoints(result);
+        trumpShift.value = playTrumpShift(result);
+        return true;
+    }
+
+    /** Like removeFirstShift, but returns all outcomes in one int,
+        see playValid(), playPoints(), playTrumpShift(). */
+    public int removeFirstShiftPacked(final byte shift,
+                                      final byte trumpShift)
     {
         //Did the player have the card?
         if(!containsShift(shift))
-            return false;
+            return 0;
 
         //Remove the card:
         removeShift(shift);
@@ -111,11 +177,8 @@ public class ThousandCardSet{
             && containsShift(shift+1))
            ||(valueShift(shift)==ThousandProtocol.KING_SHIFT
               && containsShift(shift-1)))
-            {
-                firstSmallPoints.value+=marriagePoints[shift];
-                trumpShift.value = suitShift(shift);
-            }
-        return true;
+            return PLAY_VALID | marriagePoints[shift] | (suitShift(shift)<<11);
+        return PLAY_VALID | (trumpShift<<11);
     }
 
     public boolean removeSecondShift(final byte firstShift,
@@ -167,6 +230,57 @@ public class ThousandCardSet{
             }
     }
 
+    //All cards higher than the card, in the same suit. For how this
+    //is calculated, read removeSecondShift.
+    private static int higherInSuit(final byte shift){
+        return (0x3F>>(valueShift(shift)+1))<<(shift+1);
+    }
+
+    /** Cards which removeSecondShift would accept, without removing
+        anything. */
+    public int legalSecondShifts(final byte firstShift,
+                                 final byte trumpShift){
+        final int sameSuit = value & (0x3F<<suitShift(firstShift));
+        if(sameSuit!=0){
+            //Higher card if we have one, otherwise any of the suit.
+            final int higher = sameSuit & higherInSuit(firstShift);
+            return (higher!=0 ? higher : sameSuit);
+        }
+        //Trump if we have one, otherwise anything.
+        final int trumps = value & (0x3F<<trumpShift);
+        return (trumps!=0 ? trumps : value);
+    }
+
+    /** Cards which removeThirdShift would accept, without removing
+        anything. */
+    public int legalThirdShifts(final byte firstShift,
+                                final byte secondShift,
+                                final byte trumpShift){
+        final byte firstSuitShift = suitShift(firstShift);
+        final byte secondSuitShift = suitShift(secondShift);
+        final int sameSuit = value & (0x3F<<firstSuitShift);
+        if(sameSuit!=0){
+            //If second was trump (and first not), we don't need to
+            //play higher:
+            if(secondSuitShift==trumpShift && secondSuitShift!=firstSuitShift)
+                return sameSuit;
+            final byte maxShift
+                = (secondSuitShift==firstSuitShift && secondShift>firstShift)
+                ? secondShift : firstShift;
+            final int higher = sameSuit & higherInSuit(maxShift);
+            return (higher!=0 ? higher : sameSuit);
+        }
+        final int trumps = value & (0x3F<<trumpShift);
+        if(trumps==0)
+            return value;
+        //If second was a trump, we have to beat it if we can:
+        if(secondSuitShift==trumpShift){
+            final int higher = trumps & higherInSuit(secondShift);
+            return (higher!=0 ? higher : trumps);
+        }
+        return trumps;
+    }
+
     public boolean removeThirdShift(final byte firstShift,
                                     final byte secondShift,
                                     final byte thirdShift,
@@ -179,6 +293,32 @@ public class ThousandCardSet{
         //If there's no such card, return false.
         if(!containsShift(thirdShift))
             return false;
+        final int result = removeThirdShiftPacked(firstShift,
+                                                  secondShift,
+                                                  thirdShift,
+                                                  trumpShift);
+        final byte winnerOffset = playWinnerOffset(result);
+        switch(winnerOffset){
+        case 0: thirdSmallPoints.value+=playPoints(result); break;
+        case 1: firstSmallPoints.value+=playPoints(result); break;
+        default: secondSmallPoints.value+=playPoints(result);
+        }
+        turnIncrement.value = winnerOffset;
+        return playValid(result);
+    }
+
+    /** Like removeThirdShift, but returns all outcomes in one int,
+        see playValid(), playPoints(), playWinnerOffset(). If the
+        card is held but may not be played, it's removed anyway, as
+        removeThirdShift does. */
+    public int removeThirdShiftPacked(final byte firstShift,
+                                      final byte secondShift,
+                                      final byte thirdShift,
+                                      final byte trumpShift)
+    {
+        //If there's no such card, it's invalid.
+        if(!containsShift(thirdShift))
+            return 0;
 
         //Remove the card:
         removeShift(thirdShift);
@@ -200,9 +340,7 @@ public class ThousandCardSet{
                 //If second was trump (and first not), we don't need to play higher:
                 if(secondSuitShift==trumpShift && secondSuitShift!=firstSuitShift)
                     {
-                        secondSmallPoints.value+=sum;
-                        turnIncrement.value=2;
-                        return true;
+                        return packTrick(sum,2,true);
                     }
                 //Second was not trump (or all are trumps). Which card should be beaten?
                 final boolean secondWins
@@ -213,9 +351,7 @@ public class ThousandCardSet{
                 //If higher card was played, it's a valid move.
                 if(thirdShift>maxShift)
                     {
-                        thirdSmallPoints.value+=sum;
-                        turnIncrement.value=0;
-                        return true;
+                        return packTrick(sum,0,true);
                     }
                 else
                     {//Lower card was played. It's a valid move, if there was no
@@ -224,25 +360,17 @@ public class ThousandCardSet{
                         // 000000 111111 - 0x3f
                         // 000000 000111 - 0x3f >> 2+1
                         // 111000 000000 - All higher in same suit
-                        if(secondWins)
-                            {
-                                secondSmallPoints.value+=sum;
-                                turnIncrement.value=2;
-                            }
-                        else
-                            {
-                                firstSmallPoints.value+=sum;
-                                turnIncrement.value=1;
-                            }
-                        return !hasAnyOf((0x3F>>(maxValueShift+1))
-                                         <<(maxShift+1));
+                        return packTrick(sum,
+                                         secondWins ? 2 : 1,
+                                         !hasAnyOf((0x3F>>(maxValueShift+1))
+                                                   <<(maxShift+1)));
                     }
             }
         else
             {//Different suit was played.
                 //If the player has cards of first card suit, move is invalid.
                 if(hasAnyOf(0x3F<<firstSuitShift))
-                    return false;
+                    return 0;
                 //Was trump played?
                 if(thirdSuitShift==trumpShift)
                     {//1:non--trump 3:trump
@@ -252,42 +380,31 @@ public class ThousandCardSet{
                                 //If we can, we have to beat the second card.
                                 if(thirdShift>secondShift)
                                     {
-                                        thirdSmallPoints.value+=sum;
-                                        turnIncrement.value=0;
-                                        return true;
+                                        return packTrick(sum,0,true);
                                     }
                                 else
                                     {//Lower card was played. It's a valid move, if there was no
                                         //higher.
-                                        secondSmallPoints.value+=sum;
-                                        turnIncrement.value=2;
                                         //For how this is calculated, read above.
-                                        return !hasAnyOf((0x3F>>(secondValueShift+1))
-                                                         <<(secondShift+1));
+                                        return packTrick(sum,2,
+                                                         !hasAnyOf((0x3F>>(secondValueShift+1))
+                                                                   <<(secondShift+1)));
                                     }                
                             }
                         else
                             {//1:non--trump 2:non--trump 3:trump
-                                thirdSmallPoints.value+=sum;
-                                turnIncrement.value=0;
-                                return true;
+                                return packTrick(sum,0,true);
                             }
                     }
                 else
                     {//1:X 3:Y, where Y is non--trump and X!=Y
-                        if(firstSuitShift!=trumpShift && secondSuitShift==trumpShift
-                           ||(secondSuitShift==firstSuitShift && secondShift>firstShift))
-                            {
-                                secondSmallPoints.value+=sum;
-                                turnIncrement.value=2;
-                            }
-                        else
-                            {
-                                firstSmallPoints.value+=sum;
-                                turnIncrement.value=1;
-                            }
+                        final boolean secondWins
+                            = (firstSuitShift!=trumpShift && secondSuitShift==trumpShift)
+                            || (secondSuitShift==firstSuitShift && secondShift>firstShift);
                         //Non--trump played. It's OK if we don't have a trump.
-                        return !hasAnyOf(0x3F<<trumpShift);
+                        return packTrick(sum,
+                                         secondWins ? 2 : 1,
+                                         !hasAnyOf(0x3F<<trumpShift));
                     }
             }
     }
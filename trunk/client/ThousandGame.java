@@ -0,0 +1,779 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.util.Random;
+
+/** State of a game of Thousand without any user interface. It
+ * follows the same rules as the server (server/Thousand.cpp).
+ *
+ * A player's game only knows cards of other players when they're
+ * played or shown, and learns about moves from ThousandProtocol
+ * messages. JThousandBoard renders from it, HeadlessPlayer plays
+ * with it. A game started with initialize() knows all cards and
+ * deals them itself, so whole games can be simulated or moves
+ * validated like on the server.
+ */
+public class ThousandGame implements GameLogic{
+
+    public static enum Stage
+    {
+      BIDDING,
+      SELECTING_FIRST,
+      SELECTING_SECOND,
+      CONTRACTING,
+      PLAYING_FIRST,
+      PLAYING_SECOND,
+      PLAYING_THIRD,
+      ENDED
+    };
+
+    private static final byte NUMBER_OF_PLAYERS = 3;
+
+    private Stage stage;
+    private byte turn;
+    //Whose cards we know, -1 if we know all:
+    private byte myTurnGamePlayer;
+
+    private byte startsBidding;
+
+    private byte biddingWinner;
+
+    private final ThousandCardSet must;
+    private final ThousandCardSet[] sets;
+    //How many cards each player holds, including unknown ones:
+    private final byte[] numberOfCards;
+
+    private final byte[] bids10;
+    private byte minimumNextBid10;
+
+    private final B trumpShift;
+    private byte firstShift;
+    private byte secondShift;
+    private byte thirdShift;
+
+    private final S[] smallPoints;
+    private final int[] bigPoints10;
+
+    //Reused for validating and scoring cards:
+    private final ThousandCardSet scratchSet;
+
+    private final Random random;
+
+    //Reused for decoding moves:
+    private final ThousandProtocol.View_1_DEAL dealView
+        = new ThousandProtocol.View_1_DEAL();
+    private final ThousandProtocol.View_1_BID bidView
+        = new ThousandProtocol.View_1_BID();
+    private final ThousandProtocol.View_1_BID_END_HIDDEN_MUST bidEndHiddenMustView
+        = new ThousandProtocol.View_1_BID_END_HIDDEN_MUST();
+    private final ThousandProtocol.View_1_BID_END_SHOW_MUST bidEndShowMustView
+        = new ThousandProtocol.View_1_BID_END_SHOW_MUST();
+    private final ThousandProtocol.View_1_CONTRACT contractView
+        = new ThousandProtocol.View_1_CONTRACT();
+    private final ThousandProtocol.View_1_PLAY playView
+        = new ThousandProtocol.View_1_PLAY();
+    private final ThousandProtocol.View_1_PLAY_AND_DEAL playAndDealView
+        = new ThousandProtocol.View_1_PLAY_AND_DEAL();
+    private final ThousandProtocol.View_1_PLAY_NEW_TRUMP playNewTrumpView
+        = new ThousandProtocol.View_1_PLAY_NEW_TRUMP();
+    private final ThousandProtocol.View_1_SELECT selectView
+        = new ThousandProtocol.View_1_SELECT();
+    private final ThousandProtocol.View_1_SELECT_HIDDEN selectHiddenView
+        = new ThousandProtocol.View_1_SELECT_HIDDEN();
+
+    public ThousandGame(){
+        this(new Random());
+    }
+
+    public ThousandGame(final Random random){
+        this.stage = Stage.ENDED;
+        this.myTurnGamePlayer = -1;
+        this.must = new ThousandCardSet();
+        this.sets = new ThousandCardSet[]{new ThousandCardSet(),
+                                          new ThousandCardSet(),
+                                          new ThousandCardSet()};
+        this.numberOfCards = new byte[]{0,0,0};
+        this.bids10 = new byte[]{0,0,0};
+        this.trumpShift = new B();
+        this.smallPoints = new S[]{new S(),new S(),new S()};
+        this.bigPoints10 = new int[]{0,0,0};
+        this.scratchSet = new ThousandCardSet();
+        this.random = random;
+    }
+
+    public String makeStateString(){
+        return "stage="+stage
+            + " turn="+(int)turn
+            + " startsBidding="+(int)startsBidding
+            + " biddingWinner="+(int)biddingWinner
+            + " bids10={"+bids10[0]+"," +bids10[1]+"," +bids10[2]+"}"
+            + " minimumNextBid10="+(int)minimumNextBid10
+            + " trumpShift="+(int)trumpShift.value
+            + " firstShift="+(int)firstShift
+            + " secondShift="+(int)secondShift
+            + " thirdShift="+(int)thirdShift
+            + " smallPoints={"+smallPoints[0]+"," +smallPoints[1]+"," +smallPoints[2]+"}"
+            + " bigPoints10={"+bigPoints10[0]+"," +bigPoints10[1]+"," +bigPoints10[2]+"}";
+    }
+
+    //Accessors for rendering:
+    public Stage getStage(){ return stage; }
+    public byte getTurn(){ return turn; }
+    public byte getMyTurnGamePlayer(){ return myTurnGamePlayer; }
+    public byte getStartsBidding(){ return startsBidding; }
+    public byte getBiddingWinner(){ return biddingWinner; }
+    public byte getBid10(final int player){ return bids10[player]; }
+    public byte getMinimumNextBid10(){ return minimumNextBid10; }
+    public int getMust(){ return must.value; }
+    public int getCards(final int player){ return sets[player].value; }
+    public byte getNumberOfCards(final int player){ return numberOfCards[player]; }
+    public byte getTrumpShift(){ return trumpShift.value; }
+    public byte getFirstShift(){ return firstShift; }
+    public byte getSecondShift(){ return secondShift; }
+    public byte getThirdShift(){ return thirdShift; }
+    public short getSmallPoints(final int player){ return smallPoints[player].value; }
+    public int getBigPoints10(final int player){ return bigPoints10[player]; }
+
+    //Stage.values() allocates a new array each time:
+    private static final Stage[] STAGES = Stage.values();
+
+    //Layout of the packed state. Fields which may be -1 are stored
+    //plus one. Word 0: cards of players 0 and 1, number of cards
+    //of each player, stage:
+    private long word0(){
+        return sets[0].value
+            | ((long)sets[1].value<<24)
+            | ((long)numberOfCards[0]<<48)
+            | ((long)numberOfCards[1]<<52)
+            | ((long)numberOfCards[2]<<56)
+            | ((long)stage.ordinal()<<60);
+    }
+
+    //Word 1: cards of player 2, must, turn, who starts bidding, who
+    //won it, whose cards we know, trump:
+    private long word1(){
+        return sets[2].value
+            | ((long)must.value<<24)
+            | ((long)turn<<48)
+            | ((long)startsBidding<<50)
+            | ((long)(biddingWinner+1)<<52)
+            | ((long)(myTurnGamePlayer+1)<<54)
+            | ((long)trumpShift.value<<56);
+    }
+
+    //Word 2: bids, minimum next bid, small points:
+    private long word2(){
+        return (bids10[0]+1)
+            | ((long)(bids10[1]+1)<<7)
+            | ((long)(bids10[2]+1)<<14)
+            | ((long)minimumNextBid10<<21)
+            | ((long)smallPoints[0].value<<27)
+            | ((long)smallPoints[1].value<<36)
+            | ((long)smallPoints[2].value<<45);
+    }
+
+    //Word 3: cards in the trick, big points as signed 16 bits:
+    private long word3(){
+        return (firstShift+1)
+            | ((long)(secondShift+1)<<5)
+            | ((long)(thirdShift+1)<<10)
+            | ((bigPoints10[0]&0xFFFFL)<<15)
+            | ((bigPoints10[1]&0xFFFFL)<<31)
+            | ((bigPoints10[2]&0xFFFFL)<<47);
+    }
+
+    /** Snapshot of the whole position. */
+    public ThousandState getState(){
+        return new ThousandState(word0(),word1(),word2(),word3());
+    }
+
+    /** Writes the position as ThousandState.WORDS longs, without
+        allocating anything. */
+    public void getState(final long[] words, final int offset){
+        words[offset] = word0();
+        words[offset+1] = word1();
+        words[offset+2] = word2();
+        words[offset+3] = word3();
+    }
+
+    /** Restores the position from a snapshot. */
+    public void setState(final ThousandState state){
+        setState(state.getWord(0),
+                 state.getWord(1),
+                 state.getWord(2),
+                 state.getWord(3));
+    }
+
+    /** Restores the position from ThousandState.WORDS longs. */
+    public void setState(final long[] words, final int offset){
+        setState(words[offset],
+                 words[offset+1],
+                 words[offset+2],
+                 words[offset+3]);
+    }
+
+    private void setState(final long word0,
+                          final long word1,
+                          final long word2,
+                          final long word3){
+        sets[0].value = (int)(word0&0xFFFFFF);
+        sets[1].value = (int)((word0>>>24)&0xFFFFFF);
+        numberOfCards[0] = (byte)((word0>>>48)&0xF);
+        numberOfCards[1] = (byte)((word0>>>52)&0xF);
+        numberOfCards[2] = (byte)((word0>>>56)&0xF);
+        stage = STAGES[(int)(word0>>>60)];
+
+        sets[2].value = (int)(word1&0xFFFFFF);
+        must.value = (int)((word1>>>24)&0xFFFFFF);
+        turn = (byte)((word1>>>48)&0x3);
+        startsBidding = (byte)((word1>>>50)&0x3);
+        biddingWinner = (byte)(((word1>>>52)&0x3)-1);
+        myTurnGamePlayer = (byte)(((word1>>>54)&0x3)-1);
+        trumpShift.value = (byte)((word1>>>56)&0x1F);
+
+        bids10[0] = (byte)((word2&0x7F)-1);
+        bids10[1] = (byte)(((word2>>>7)&0x7F)-1);
+        bids10[2] = (byte)(((word2>>>14)&0x7F)-1);
+        minimumNextBid10 = (byte)((word2>>>21)&0x3F);
+        smallPoints[0].value = (short)((word2>>>27)&0x1FF);
+        smallPoints[1].value = (short)((word2>>>36)&0x1FF);
+        smallPoints[2].value = (short)((word2>>>45)&0x1FF);
+
+        firstShift = (byte)((word3&0x1F)-1);
+        secondShift = (byte)(((word3>>>5)&0x1F)-1);
+        thirdShift = (byte)(((word3>>>10)&0x1F)-1);
+        bigPoints10[0] = (short)(word3>>>15);
+        bigPoints10[1] = (short)(word3>>>31);
+        bigPoints10[2] = (short)(word3>>>47);
+    }
+
+    public byte getNumberOfPlayers(){
+        return NUMBER_OF_PLAYERS;
+    }
+
+    /** Whether we know cards of the player. */
+    public boolean knows(final int player){
+        return myTurnGamePlayer==-1 || player==myTurnGamePlayer;
+    }
+
+    /** Whether we make the current move. If we know all cards, we
+        make all moves. */
+    public boolean myTurn(){
+        return knows(turn);
+    }
+
+    private byte getNextPlayer(final int increment){
+        return (byte)((turn+increment)%NUMBER_OF_PLAYERS);
+    }
+
+    private byte getPreviousPlayer(final int decrement){
+        return (byte)((turn+NUMBER_OF_PLAYERS-decrement)%NUMBER_OF_PLAYERS);
+    }
+
+    //Picks a random card out of the mask:
+    private byte randomShift(final int mask){
+        int n = this.random.nextInt(Integer.bitCount(mask));
+        int rest = mask;
+        while(n-->0)
+            rest &= rest-1;
+        return (byte)Integer.numberOfTrailingZeros(rest);
+    }
+
+    //Resets everything but the cards for a new deal:
+    private void deal(){
+        numberOfCards[0] = 7;
+        numberOfCards[1] = 7;
+        numberOfCards[2] = 7;
+
+        bids10[turn]=-1;
+        bids10[getPreviousPlayer(1)]=10;
+        bids10[getNextPlayer(1)]=-1;
+
+        minimumNextBid10=11;
+
+        trumpShift.value = ThousandProtocol.NO_TRUMP_SHIFT;
+
+        smallPoints[0].value=0;
+        smallPoints[1].value=0;
+        smallPoints[2].value=0;
+    }
+
+    private void deal(final int myCards){
+        must.setEmpty();
+        sets[0].setEmpty();
+        sets[1].setEmpty();
+        sets[2].setEmpty();
+        sets[myTurnGamePlayer].value = myCards;
+        deal();
+    }
+
+    //Deals all cards at random, 7 for each player and 3 for must:
+    private void dealAll(){
+        int deck = 0xFFFFFF;
+        for(byte p = 0; p<NUMBER_OF_PLAYERS; p++){
+            sets[p].setEmpty();
+            for(int i=0; i<7; i++){
+                final byte shift = randomShift(deck);
+                sets[p].addShift(shift);
+                deck &= ~(1<<shift);
+            }
+        }
+        must.value = deck;
+        deal();
+    }
+
+    /** Highest bid or contract the player to move may declare,
+        judging by marriages in her cards. */
+    public byte maxBid10()
+    {
+        byte result = 12;
+        final ThousandCardSet set = sets[turn];
+        //TODO: precompute sets and check intersection.
+        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
+                             +ThousandProtocol.HEART_SHIFT)
+           && set.containsShift(ThousandProtocol.KING_SHIFT
+                                +ThousandProtocol.HEART_SHIFT))
+            result+=10;
+        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
+                             +ThousandProtocol.DIAMOND_SHIFT)
+           && set.containsShift(ThousandProtocol.KING_SHIFT
+                                +ThousandProtocol.DIAMOND_SHIFT))
+            result+=8;
+        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
+                             +ThousandProtocol.CLUB_SHIFT)
+           && set.containsShift(ThousandProtocol.KING_SHIFT
+                                +ThousandProtocol.CLUB_SHIFT))
+            result+=6;
+        if(set.containsShift(ThousandProtocol.QUEEN_SHIFT
+                             +ThousandProtocol.SPADE_SHIFT)
+           && set.containsShift(ThousandProtocol.KING_SHIFT
+                                +ThousandProtocol.SPADE_SHIFT))
+            result+=4;
+        return result;
+    }
+
+    public boolean initialize(final Table table,
+                              final MessageBuffer initialMessage){
+        if(initialMessage==null
+           || table.turnGamePlayerToTablePlayerId.size()!=NUMBER_OF_PLAYERS
+           || !dealView.wrap(initialMessage))
+            return false;
+        this.initialize(table.myTurnGamePlayer,dealView.thousandCardSet());
+        return true;
+    }
+
+    //Game starts with bidding. Player 0 will start bidding:
+    private void start(){
+        stage = Stage.BIDDING;
+        turn = 0;
+        startsBidding = turn;
+
+        bigPoints10[0] = 0;
+        bigPoints10[1] = 0;
+        bigPoints10[2] = 0;
+    }
+
+    /** Starts a new game as seen by one player.
+        @param myCards Cards dealt to us, as ThousandCardSet value. */
+    public void initialize(final byte myTurnGamePlayer,
+                           final int myCards){
+        this.myTurnGamePlayer = myTurnGamePlayer;
+        start();
+        deal(myCards);
+    }
+
+    /** Starts a new game in which we know all cards. Cards are
+        dealt at random, also for following deals. */
+    public void initialize(){
+        this.myTurnGamePlayer = -1;
+        start();
+        dealAll();
+    }
+
+    /** Cards the player to move may play now, as ThousandCardSet
+        value. Only makes sense if we know her cards and it's one of
+        the PLAYING stages. */
+    public int playableShifts(){
+        final ThousandCardSet set = sets[turn];
+        switch(stage){
+        case PLAYING_FIRST:
+            return set.value;
+        case PLAYING_SECOND:
+            return set.legalSecondShifts(firstShift,
+                                         trumpShift.value);
+        case PLAYING_THIRD:
+            return set.legalThirdShifts(firstShift,
+                                        secondShift,
+                                        trumpShift.value);
+        default:
+            return 0;
+        }
+    }
+
+    /** Server doesn't send our moves back to us, except when it
+        has to tell us more than we sent: when our pass ends the
+        bidding and when our card ends a deal. Such moves mustn't
+        be applied before the server answers.
+        @param move Our move, not applied yet. */
+    public boolean serverEchoes(final MessageBuffer move){
+        if(myTurnGamePlayer==-1)
+            return false;
+        if(stage==Stage.BIDDING)
+            return bidView.wrap(move) && bidView.bid10()==0
+                && (bids10[0]==0 || bids10[1]==0 || bids10[2]==0);
+        return stage==Stage.PLAYING_THIRD
+            && numberOfCards[myTurnGamePlayer]==1;
+    }
+
+    /** Applies a move message. Moves of players whose cards we
+        know are validated, others are trusted to be validated by
+        the server. */
+    public int moveMade(final MessageBuffer move,
+                        final int[] endResult){
+        final ThousandProtocol.MessageType moveType
+            = ThousandProtocol.lookupMessageType(move);
+        if(moveType==null)
+            return INVALID|END;
+
+        switch(moveType){
+        case BID_1:
+            if(!bidView.wrap(move))
+                return INVALID|END;
+            return bid(bidView.bid10());
+        case BID_END_SHOW_MUST_1:
+            if(myTurnGamePlayer==-1 || !bidEndShowMustView.wrap(move))
+                return INVALID|END;
+            return endBidding(bidEndShowMustView.must());
+        case BID_END_HIDDEN_MUST_1:
+            if(myTurnGamePlayer==-1 || !bidEndHiddenMustView.wrap(move))
+                return INVALID|END;
+            return endBidding(0);
+        case SELECT_1:
+            if(!selectView.wrap(move))
+                return INVALID|END;
+            return select(selectView.shift());
+        case SELECT_HIDDEN_1:
+            if(!selectHiddenView.wrap(move))
+                return INVALID|END;
+            return select((byte)-1);
+        case CONTRACT_1:
+            if(!contractView.wrap(move))
+                return INVALID|END;
+            return contract(contractView.contract10());
+        case PLAY_1:
+            if(!playView.wrap(move))
+                return INVALID|END;
+            return play(playView.shift(),false,-1,endResult);
+        case PLAY_NEW_TRUMP_1:
+            if(stage!=Stage.PLAYING_FIRST || !playNewTrumpView.wrap(move))
+                return INVALID|END;
+            return play(playNewTrumpView.shift(),true,-1,endResult);
+        case PLAY_AND_DEAL_1:
+            if(stage!=Stage.PLAYING_THIRD || !playAndDealView.wrap(move))
+                return INVALID|END;
+            return play(playAndDealView.shift(),
+                        false,
+                        playAndDealView.thousandCardSet(),
+                        endResult);
+        default:
+            return INVALID|END;
+        }
+    }
+
+    /** Bid or pass (0) by the player to move. */
+    public int bid(final byte bid10){
+        if(stage!=Stage.BIDDING)
+            return INVALID|END;
+        if(myTurn()
+           && (bid10>maxBid10()
+               || (bid10!=0 && bid10<minimumNextBid10)))
+            return INVALID|END;
+
+        final byte oldBid10 = bids10[turn];
+        bids10[turn] = bid10;
+
+        //Shall bidding end? Yes if two passes.
+        if(bid10==0
+           && (bids10[getNextPlayer(1)]==0 || bids10[getNextPlayer(2)]==0)){
+            //Only if we know must. Otherwise BID_END_..._MUST
+            //would be sent instead:
+            if(myTurnGamePlayer!=-1){
+                bids10[turn] = oldBid10;
+                return INVALID|END;
+            }
+            return endBidding(must.value);
+        }
+
+        if(bid10!=0)
+            minimumNextBid10=(byte)(bid10+1);
+
+        //Skip one player if passed.
+        if(bids10[getNextPlayer(1)]!=0)
+            turn = getNextPlayer(1);
+        else
+            turn = getNextPlayer(2);
+        return VALID|CONTINUE;
+    }
+
+    //Bidding ended with a pass of the player to move:
+    private int endBidding(final int mustValue){
+        if(stage!=Stage.BIDDING)
+            return INVALID|END;
+
+        bids10[turn] = 0;
+
+        biddingWinner = (byte)((bids10[0]==0 && bids10[1]==0)?2
+                               :((bids10[1]==0 && bids10[2]==0)?0
+                                 :((bids10[2]==0 && bids10[0]==0)?1
+                                   :-1)));
+        if(biddingWinner==-1)
+            return INVALID|END;
+
+        this.must.value = mustValue;
+        turn = biddingWinner;
+        //We only track cards of players we know, see select:
+        if(knows(turn))
+            sets[turn].addAll(must);
+        numberOfCards[turn] += 3;
+
+        stage = Stage.SELECTING_FIRST;
+        return VALID|CONTINUE;
+    }
+
+    /** Bidding winner passes a card to first opponent, then to the
+        second one.
+        @param shift The card, or -1 if it's not known to us. */
+    public int select(final byte shift){
+        if(stage!=Stage.SELECTING_FIRST && stage!=Stage.SELECTING_SECOND)
+            return INVALID|END;
+
+        //Who gets the card:
+        final byte receiver
+            = getNextPlayer(stage==Stage.SELECTING_FIRST?1:2);
+
+        if(shift==-1){
+            //Card not from me and not for me.
+            if(myTurn() || knows(receiver))
+                return INVALID|END;
+        }else{
+            if(!myTurn() && !knows(receiver))
+                return INVALID|END;
+            if(myTurn()){
+                if(!sets[turn].containsShift(shift))
+                    return INVALID|END;
+                sets[turn].removeShift(shift);
+            }
+            if(knows(receiver))
+                sets[receiver].addShift(shift);
+        }
+        numberOfCards[turn]--;
+        numberOfCards[receiver]++;
+
+        stage = (stage==Stage.SELECTING_FIRST
+                 ? Stage.SELECTING_SECOND
+                 : Stage.CONTRACTING);
+        return VALID|CONTINUE;
+    }
+
+    /** Bidding winner declares the contract. */
+    public int contract(final byte contract10){
+        if(stage!=Stage.CONTRACTING)
+            return INVALID|END;
+        if(contract10<bids10[turn]
+           || (myTurn() && contract10>maxBid10()))
+            return INVALID|END;
+        bids10[turn] = contract10;
+        stage = Stage.PLAYING_FIRST;
+        return VALID|CONTINUE;
+    }
+
+    /** Player to move plays a card. If we know all cards, a new
+        deal is drawn when the deal ends. */
+    public int play(final byte shift,
+                    final int[] endResult){
+        return play(shift,false,-1,endResult);
+    }
+
+    /**
+       @param newTrump Whether the card declares a marriage. Only
+       used if we don't know cards of the player.
+       @param newCards Our cards in the next deal, or -1 if not
+       dealt. */
+    private int play(final byte shift,
+                     final boolean newTrump,
+                     final int newCards,
+                     final int[] endResult){
+        if(shift<0 || shift>=24)
+            return INVALID|END;
+        switch(stage){
+        case PLAYING_FIRST:
+            return playFirst(shift,newTrump);
+        case PLAYING_SECOND:
+            return playSecond(shift);
+        case PLAYING_THIRD:
+            return playThird(shift,newCards,endResult);
+        default:
+            return INVALID|END;
+        }
+    }
+
+    private int playFirst(final byte shift,
+                          final boolean newTrump){
+        firstShift = shift;
+        final ThousandCardSet set = (myTurn() ? sets[turn] : scratchSet);
+        if(!myTurn()){
+            //We might not know the cards of the player, but we have
+            //to calculate points, etc. anyway using the same method
+            //that server uses. So we create a set having the played
+            //card. If trump changed, we need to add king (or queen)
+            //to the set. We do it by adding all cards:
+            scratchSet.value = (newTrump ? 0xFFFFFF : 0);
+            scratchSet.addShift(firstShift);
+        }
+        final int result = set.removeFirstShiftPacked(firstShift,
+                                                      trumpShift.value);
+        if(!ThousandCardSet.playValid(result))
+            return INVALID|END;
+        smallPoints[turn].value += ThousandCardSet.playPoints(result);
+        trumpShift.value = ThousandCardSet.playTrumpShift(result);
+        numberOfCards[turn]--;
+        turn = getNextPlayer(1);
+        stage = Stage.PLAYING_SECOND;
+        return VALID|CONTINUE;
+    }
+
+    private int playSecond(final byte shift){
+        secondShift = shift;
+        if(myTurn()
+           && !sets[turn].removeSecondShift(firstShift,
+                                            secondShift,
+                                            trumpShift.value))
+            return INVALID|END;
+        numberOfCards[turn]--;
+        turn = getNextPlayer(1);
+        stage = Stage.PLAYING_THIRD;
+        return VALID|CONTINUE;
+    }
+
+    private int playThird(final byte shift,
+                          final int newCards,
+                          final int[] endResult){
+        thirdShift = shift;
+
+        //Same method as the server uses, see playFirst:
+        final ThousandCardSet set = (myTurn() ? sets[turn] : scratchSet);
+        if(!myTurn())
+            scratchSet.value = (1<<thirdShift);
+        final int result = set.removeThirdShiftPacked(firstShift,
+                                                      secondShift,
+                                                      thirdShift,
+                                                      trumpShift.value);
+        if(!ThousandCardSet.playValid(result))
+            return INVALID|END;
+        final byte winnerOffset = ThousandCardSet.playWinnerOffset(result);
+        smallPoints[getNextPlayer(winnerOffset)].value
+            += ThousandCardSet.playPoints(result);
+        numberOfCards[turn]--;
+
+        if(numberOfCards[turn]!=0){
+            //Still some cards in the set.
+            if(newCards!=-1)
+                return INVALID|END;
+            turn = getNextPlayer(winnerOffset);
+            stage = Stage.PLAYING_FIRST;
+            return VALID|CONTINUE;
+        }
+
+        //No more cards. Add points for each player:
+        for(byte p = 0; p<NUMBER_OF_PLAYERS; p++){
+            if(p==biddingWinner){
+                if(smallPoints[p].value >= 10*bids10[p])
+                    bigPoints10[p] += bids10[p];
+                else
+                    bigPoints10[p] -= bids10[p];
+            }else{
+                if(bigPoints10[p] < 80)
+                    bigPoints10[p] += (smallPoints[p].value+4)/10;
+            }
+        }
+
+        //The end?
+        if(bigPoints10[biddingWinner]>=100){
+            if(newCards!=-1)
+                return INVALID|END;
+            stage = Stage.ENDED;
+            for(byte p = 0; p<NUMBER_OF_PLAYERS; p++)
+                endResult[p] = 10*bigPoints10[p];
+            return VALID|END;
+        }
+
+        //Not the end, but next bidding.
+        stage = Stage.BIDDING;
+        startsBidding = (byte)((startsBidding+1)%NUMBER_OF_PLAYERS);
+        turn = startsBidding;
+        if(myTurnGamePlayer==-1){
+            dealAll();
+        }else{
+            if(newCards==-1)
+                return INVALID|END;
+            deal(newCards);
+        }
+        return VALID|CONTINUE;
+    }
+
+    /** Plays a simple random legal game: passes, contracts the
+        minimum and plays random allowed cards. */
+    public MessageBuffer nextMove(){
+        if(!myTurn())
+            return null;
+        switch(stage){
+        case BIDDING:
+            return ThousandProtocol.serialize_1_BID((byte)0);
+        case SELECTING_FIRST:
+        case SELECTING_SECOND:
+            return ThousandProtocol.serialize_1_SELECT
+                (randomShift(sets[turn].value));
+        case CONTRACTING:
+            return ThousandProtocol.serialize_1_CONTRACT(bids10[turn]);
+        case PLAYING_FIRST:
+        case PLAYING_SECOND:
+        case PLAYING_THIRD:
+            return ThousandProtocol.serialize_1_PLAY
+                (randomShift(playableShifts()));
+        default:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** Estimates how many points a hand of Thousand will take, for
+ * bidding advice. Each suit is scored from its 6-bit mask by
+ * looking it up in a table computed once, so evaluating a hand is
+ * four table reads.
+ */
+public class ThousandHandEvaluator{
+
+    //Average points of cards in must, which bidding winner takes
+    //(see ThousandSimulator report):
+    private static final int MUST_POINTS = 15;
+    //Points of opponents' cards falling on a trick we win:
+    private static final int TRICK_POINTS = 10;
+
+    //Indexed by suit (spades, clubs, diamonds, hearts) and the
+    //suit's 6 bits of ThousandCardSet:
+    private static final short[][] SUIT_POINTS = new short[4][64];
+    private static final byte[][] SUIT_MARRIAGE10 = new byte[4][64];
+    static{
+        final ThousandCardSet set = new ThousandCardSet();
+        for(int suit=0; suit<4; suit++)
+            for(int mask=0; mask<64; mask++){
+                set.value = mask<<(6*suit);
+                final short marriage = set.marriagePoints();
+                int points = marriage;
+                //Sure tricks: aces, then tens under them, etc.:
+                for(int valueShift=ThousandProtocol.ACE_SHIFT;
+                    valueShift>=0 && (mask&(1<<valueShift))!=0;
+                    valueShift--){
+                    set.value = 1<<(6*suit+valueShift);
+                    points += set.points()+TRICK_POINTS;
+                }
+                //Long suits win more tricks once others run out of it:
+                final int length = Integer.bitCount(mask);
+                if(length>3)
+                    points += (length-3)*TRICK_POINTS;
+                SUIT_POINTS[suit][mask] = (short)points;
+                SUIT_MARRIAGE10[suit][mask] = (byte)(marriage/10);
+            }
+    }
+
+    /** Points we may expect to take with the cards if we win the
+        bidding.
+        @param mustTaken True if must is already among the cards
+        (when contracting), otherwise its average is added. */
+    public static int evaluate(final int cards,
+                               final boolean mustTaken){
+        return SUIT_POINTS[0][cards&0x3F]
+            + SUIT_POINTS[1][(cards>>6)&0x3F]
+            + SUIT_POINTS[2][(cards>>12)&0x3F]
+            + SUIT_POINTS[3][(cards>>18)&0x3F]
+            + (mustTaken ? 0 : MUST_POINTS);
+    }
+
+    /** Highest bid worth making with the cards, and allowed by
+        marriages in them, or 0 if even 100 is too much.
+        @param mustTaken As for evaluate. */
+    public static byte bid10Hint(final int cards,
+                                 final boolean mustTaken){
+        final int maxBid10 = 12
+            + SUIT_MARRIAGE10[0][cards&0x3F]
+            + SUIT_MARRIAGE10[1][(cards>>6)&0x3F]
+            + SUIT_MARRIAGE10[2][(cards>>12)&0x3F]
+            + SUIT_MARRIAGE10[3][(cards>>18)&0x3F];
+        final int worth10 = evaluate(cards,mustTaken)/10;
+        if(worth10<10)
+            return 0;
+        return (byte)Math.min(worth10,maxBid10);
+    }
+}
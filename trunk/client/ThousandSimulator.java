@@ -0,0 +1,359 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Plays many games of Thousand with all cards known and collects
+ * statistics for tuning bidding: marriages dealt, points in must,
+ * and how often contracts of each size are made. Games are split
+ * between threads of a fork/join pool, each part with its own
+ * SplittableRandom.
+ *
+ * Usage: ThousandSimulator games [random|solver] [threads]
+ */
+public class ThousandSimulator{
+
+    //Deals after which a game is given up:
+    private static final int MAX_DEALS = 1000;
+    //Games played by one task without splitting:
+    private static final int GAMES_PER_TASK = 16;
+    private static final int QUEENS = 0x041041<<ThousandProtocol.QUEEN_SHIFT;
+
+    /** Decides moves of the player to move in a game in which all
+        cards are known. */
+    public static interface Strategy{
+        public byte bid10(final ThousandGame game,
+                          final SplittableRandom random);
+        public byte select(final ThousandGame game,
+                           final SplittableRandom random);
+        public byte contract10(final ThousandGame game,
+                               final SplittableRandom random);
+        public byte play(final ThousandGame game,
+                         final SplittableRandom random);
+    }
+
+    /** Bids, passes cards and contracts like ThousandBot, plays
+        random allowed cards. */
+    public static class RandomPlayStrategy implements Strategy{
+        public byte bid10(final ThousandGame game,
+                          final SplittableRandom random){
+            return ThousandBot.bid10(game);
+        }
+        public byte select(final ThousandGame game,
+                           final SplittableRandom random){
+            return ThousandBot.cardToPass(game.getCards(game.getTurn()));
+        }
+        public byte contract10(final ThousandGame game,
+                               final SplittableRandom random){
+            return ThousandBot.contract10(game);
+        }
+        public byte play(final ThousandGame game,
+                         final SplittableRandom random){
+            int cards = game.playableShifts();
+            for(int n = random.nextInt(Integer.bitCount(cards)); n>0; n--)
+                cards &= cards-1;
+            return (byte)Integer.numberOfTrailingZeros(cards);
+        }
+    }
+
+    /** Like RandomPlayStrategy, but plays cards perfectly, as
+        ThousandSolver finds. */
+    public static class SolverStrategy extends RandomPlayStrategy{
+        private static final ThreadLocal<ThousandSolver> solvers
+            = new ThreadLocal<ThousandSolver>(){
+                protected ThousandSolver initialValue(){
+                    return new ThousandSolver();
+                }
+            };
+        public byte play(final ThousandGame game,
+                         final SplittableRandom random){
+            final int legal = game.playableShifts();
+            if(Integer.bitCount(legal)==1)
+                return (byte)Integer.numberOfTrailingZeros(legal);
+            final int[] cards = new int[3];
+            final short[] smallPoints = new short[3];
+            for(int p=0; p<3; p++){
+                cards[p] = game.getCards(p);
+                smallPoints[p] = game.getSmallPoints(p);
+            }
+            final ThousandSolver solver = solvers.get();
+            solver.setPosition(cards,
+                               game.getTurn(),
+                               game.getStage().ordinal()
+                               -ThousandGame.Stage.PLAYING_FIRST.ordinal(),
+                               game.getFirstShift(),
+                               game.getSecondShift(),
+                               game.getTrumpShift(),
+                               smallPoints,
+                               game.getBiddingWinner());
+            final boolean maximizing = (game.getTurn()==game.getBiddingWinner());
+            byte best = -1;
+            int bestValue = 0;
+            for(int rest = legal; rest!=0; rest &= rest-1){
+                final byte shift = (byte)Integer.numberOfTrailingZeros(rest);
+                final int value = solver.value(shift,Long.MAX_VALUE);
+                if(best==-1
+                   || (maximizing ? value>bestValue : value<bestValue)){
+                    best = shift;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+    }
+
+    /** Counters of one or more games. */
+    public static class Statistics{
+        public long games;
+        public long unfinishedGames;
+        public long deals;
+        //Hands by number of marriages in them when dealt:
+        public final long[] marriagesInHand = new long[5];
+        //Deals by points of cards in must:
+        public final long[] mustPoints = new long[34];
+        //Deals by number of marriages in must:
+        public final long[] marriagesInMust = new long[2];
+        //Played contracts, and made ones, by contract10:
+        public final long[] contracts = new long[41];
+        public final long[] madeContracts = new long[41];
+
+        public void add(final Statistics other){
+            games += other.games;
+            unfinishedGames += other.unfinishedGames;
+            deals += other.deals;
+            for(int i=0; i<marriagesInHand.length; i++)
+                marriagesInHand[i] += other.marriagesInHand[i];
+            for(int i=0; i<mustPoints.length; i++)
+                mustPoints[i] += other.mustPoints[i];
+            for(int i=0; i<marriagesInMust.length; i++)
+                marriagesInMust[i] += other.marriagesInMust[i];
+            for(int i=0; i<contracts.length; i++){
+                contracts[i] += other.contracts[i];
+                madeContracts[i] += other.madeContracts[i];
+            }
+        }
+
+        //Value below which the fraction of histogram lies:
+        private static int quantile(final long[] histogram,
+                                    final double fraction){
+            long total = 0;
+            for(final long count : histogram)
+                total += count;
+            long sum = 0;
+            for(int i=0; i<histogram.length; i++){
+                sum += histogram[i];
+                if(sum>=fraction*total)
+                    return i;
+            }
+            return histogram.length-1;
+        }
+
+        private static String percent(final long part,
+                                      final long total){
+            return String.format("%.1f%%",(total==0?0.0:100.0*part/total));
+        }
+
+        public String toString(){
+            final StringBuilder report = new StringBuilder();
+            report.append("games: ").append(games)
+                .append(" (unfinished ").append(unfinishedGames).append(")")
+                .append(" deals: ").append(deals).append('\n');
+
+            final long hands = 3*deals;
+            report.append("marriages in hand:");
+            for(int i=0; i<marriagesInHand.length; i++)
+                report.append(' ').append(i).append(": ")
+                    .append(percent(marriagesInHand[i],hands));
+            report.append('\n');
+
+            long mustSum = 0;
+            for(int i=0; i<mustPoints.length; i++)
+                mustSum += i*mustPoints[i];
+            report.append("must points: mean ")
+                .append(String.format("%.1f",(deals==0?0.0:(double)mustSum/deals)))
+                .append(" p10 ").append(quantile(mustPoints,0.1))
+                .append(" p50 ").append(quantile(mustPoints,0.5))
+                .append(" p90 ").append(quantile(mustPoints,0.9))
+                .append(" with marriage ")
+                .append(percent(marriagesInMust[1],deals)).append('\n');
+
+            report.append("contracts made:");
+            for(int i=0; i<contracts.length; i++)
+                if(contracts[i]!=0)
+                    report.append(' ').append(10*i).append(": ")
+                        .append(percent(madeContracts[i],contracts[i]))
+                        .append(" of ").append(contracts[i]);
+            report.append('\n');
+            return report.toString();
+        }
+    }
+
+    //Counts what was dealt:
+    private static void dealt(final ThousandGame game,
+                              final Statistics statistics){
+        statistics.deals++;
+        for(int p=0; p<3; p++){
+            final int cards = game.getCards(p);
+            statistics.marriagesInHand
+                [Integer.bitCount(cards & (cards>>1) & QUEENS)]++;
+        }
+        final ThousandCardSet must = new ThousandCardSet();
+        must.value = game.getMust();
+        statistics.mustPoints[must.points()]++;
+        statistics.marriagesInMust
+            [Integer.bitCount(must.value & (must.value>>1) & QUEENS)]++;
+    }
+
+    /** Plays one game to the end. */
+    public static void play(final Strategy strategy,
+                            final SplittableRandom random,
+                            final Statistics statistics){
+        final ThousandGame game = new ThousandGame(new Random(random.nextLong()));
+        final int[] endResult = new int[3];
+        game.initialize();
+        dealt(game,statistics);
+        int deals = 1;
+
+        while(true){
+            int moveResult;
+            switch(game.getStage()){
+            case BIDDING:
+                moveResult = game.bid(strategy.bid10(game,random));
+                break;
+            case SELECTING_FIRST:
+            case SELECTING_SECOND:
+                moveResult = game.select(strategy.select(game,random));
+                break;
+            case CONTRACTING:
+                moveResult = game.contract(strategy.contract10(game,random));
+                break;
+            default:
+                final byte declarer = game.getBiddingWinner();
+                final byte contract10 = game.getBid10(declarer);
+                final int before = game.getBigPoints10(declarer);
+                final boolean lastCard
+                    = game.getStage()==ThousandGame.Stage.PLAYING_THIRD
+                    && game.getNumberOfCards(game.getTurn())==1;
+                moveResult = game.play(strategy.play(game,random),endResult);
+                if(lastCard){
+                    statistics.contracts[contract10]++;
+                    if(game.getBigPoints10(declarer)>before)
+                        statistics.madeContracts[contract10]++;
+                    if(game.getStage()==ThousandGame.Stage.BIDDING){
+                        if(++deals>MAX_DEALS){
+                            statistics.unfinishedGames++;
+                            return;
+                        }
+                        dealt(game,statistics);
+                    }
+                }
+            }
+            if((moveResult&GameLogic.VALIDITY_MASK)!=GameLogic.VALID)
+                throw new IllegalStateException("Strategy made invalid move: "
+                                                +game.makeStateString());
+            if((moveResult&GameLogic.CONTINUITY_MASK)==GameLogic.END){
+                statistics.games++;
+                return;
+            }
+        }
+    }
+
+    private static class Task extends RecursiveTask<Statistics>{
+        private final int games;
+        private final SplittableRandom random;
+        private final Strategy strategy;
+
+        Task(final int games,
+             final SplittableRandom random,
+             final Strategy strategy){
+            this.games = games;
+            this.random = random;
+            this.strategy = strategy;
+        }
+
+        protected Statistics compute(){
+            if(games<=GAMES_PER_TASK){
+                final Statistics statistics = new Statistics();
+                for(int g=0; g<games; g++)
+                    play(strategy,random,statistics);
+                return statistics;
+            }
+            final Task left = new Task(games/2,random.split(),strategy);
+            left.fork();
+            final Statistics statistics
+                = new Task(games-games/2,random,strategy).compute();
+            statistics.add(left.join());
+            return statistics;
+        }
+    }
+
+    /** Plays games in parallel.
+        @param strategyName "random" or "solver". */
+    public static Statistics simulate(final int games,
+                                      final String strategyName,
+                                      final ForkJoinPool pool,
+                                      final long seed){
+        return pool.invoke(new Task(games,
+                                    new SplittableRandom(seed),
+                                    strategyName.equals("solver")
+                                    ? new SolverStrategy()
+                                    : new RandomPlayStrategy()));
+    }
+
+    public static void main(final String[] arguments){
+        final int games = Integer.parseInt(arguments[0]);
+        final String strategyName
+            = (arguments.length>1 ? arguments[1] : "random");
+        final int threads
+            = (arguments.length>2
+               ? Integer.parseInt(arguments[2])
+               : Runtime.getRuntime().availableProcessors());
+
+        final long start = System.nanoTime();
+        final Statistics statistics
+            = simulate(games,
+                       strategyName,
+                       new ForkJoinPool(threads),
+                       System.nanoTime());
+        final double seconds = (System.nanoTime()-start)/1e9;
+
+        System.out.print(statistics);
+        System.out.println(String.format("%.1f s, %.0f deals/s on %d threads",
+                                         seconds,
+                                         statistics.deals/seconds,
+                                         threads));
+    }
+}
@@ -0,0 +1,375 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+
+import java.util.Random;
+
+/** Plays out the rest of a deal of Thousand with all cards known
+ * (double dummy), with alpha-beta search. The value of a position
+ * is the small points bidding winner will have when the deal ends:
+ * she maximizes it, both opponents minimize it. Not thread safe,
+ * use one per thread.
+ *
+ * Positions are hashed with Zobrist keys (who holds each card,
+ * cards of current trick, turn, trump, bidding winner) into a
+ * transposition table of fixed size, which keeps points still to
+ * be won, so it stays valid between positions and samples. Cards
+ * are tried in order: best card found before, marriages, then by
+ * points.
+ */
+public class ThousandSolver{
+
+    private static final int NUMBER_OF_PLAYERS = 3;
+    //Nodes searched between checks of the deadline:
+    private static final int NODES_PER_CHECK = 4096;
+
+    //Cards of the same value in all suits, nines at shift 0:
+    private static final int NINES = 0x041041;
+
+    //Zobrist keys:
+    private static final long[][] CARD_KEYS = new long[NUMBER_OF_PLAYERS][24];
+    private static final long[] FIRST_KEYS = new long[24];
+    private static final long[] SECOND_KEYS = new long[24];
+    private static final long[] TURN_KEYS = new long[NUMBER_OF_PLAYERS];
+    private static final long[] DECLARER_KEYS = new long[NUMBER_OF_PLAYERS];
+    //Indexed by trumpShift/6, NO_TRUMP_SHIFT is 4:
+    private static final long[] TRUMP_KEYS = new long[5];
+    static{
+        final Random random = new Random(1000);
+        for(int p=0; p<NUMBER_OF_PLAYERS; p++){
+            for(int shift=0; shift<24; shift++)
+                CARD_KEYS[p][shift] = random.nextLong();
+            TURN_KEYS[p] = random.nextLong();
+            DECLARER_KEYS[p] = random.nextLong();
+        }
+        for(int shift=0; shift<24; shift++){
+            FIRST_KEYS[shift] = random.nextLong();
+            SECOND_KEYS[shift] = random.nextLong();
+        }
+        for(int i=0; i<5; i++)
+            TRUMP_KEYS[i] = random.nextLong();
+    }
+
+    //Transposition table entries: bits 0-15 points still to be
+    //won by declarer, 16-17 bound type, 18-22 cards left, 23-27
+    //best card+1:
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+    private final long[] keys;
+    private final int[] entries;
+    private final int mask;
+
+    private final ThousandCardSet[] sets;
+    private final short[] smallPoints;
+    private byte trumpShift;
+    private byte turn;
+    //0 -- first card of a trick is played next, 1 -- second, 2 -- third:
+    private int trickPosition;
+    private byte firstShift;
+    private byte secondShift;
+    private byte declarer;
+    private long hash;
+
+    private long deadline;
+    private int nodesToCheck;
+    private boolean aborted;
+    private long nodes;
+
+    /**
+       @param tableBits Transposition table has 2^tableBits entries. */
+    public ThousandSolver(final int tableBits){
+        this.keys = new long[1<<tableBits];
+        this.entries = new int[1<<tableBits];
+        this.mask = (1<<tableBits)-1;
+        this.sets = new ThousandCardSet[]{new ThousandCardSet(),
+                                          new ThousandCardSet(),
+                                          new ThousandCardSet()};
+        this.smallPoints = new short[]{0,0,0};
+        this.trumpShift = ThousandProtocol.NO_TRUMP_SHIFT;
+    }
+
+    public ThousandSolver(){
+        this(18);
+    }
+
+    /** Forgets all positions searched so far. */
+    public void clear(){
+        java.util.Arrays.fill(this.keys,0);
+        java.util.Arrays.fill(this.entries,0);
+    }
+
+    /** Sets position to be searched, in the middle of PLAYING
+        stages.
+        @param cards Cards of each player.
+        @param trickPosition How many cards of current trick are
+        on the table.
+        @param smallPoints Points of each player so far. */
+    public void setPosition(final int[] cards,
+                            final byte turn,
+                            final int trickPosition,
+                            final byte firstShift,
+                            final byte secondShift,
+                            final byte trumpShift,
+                            final short[] smallPoints,
+                            final byte declarer){
+        long hash = 0;
+        for(int p=0; p<NUMBER_OF_PLAYERS; p++){
+            this.sets[p].value = cards[p];
+            this.smallPoints[p] = smallPoints[p];
+            for(int rest = cards[p]; rest!=0; rest &= rest-1)
+                hash ^= CARD_KEYS[p][Integer.numberOfTrailingZeros(rest)];
+        }
+        if(trickPosition>0)
+            hash ^= FIRST_KEYS[firstShift];
+        if(trickPosition>1)
+            hash ^= SECOND_KEYS[secondShift];
+        this.turn = turn;
+        this.trickPosition = trickPosition;
+        this.firstShift = firstShift;
+        this.secondShift = secondShift;
+        this.trumpShift = trumpShift;
+        this.declarer = declarer;
+        this.hash = hash
+            ^ TURN_KEYS[turn]
+            ^ TRUMP_KEYS[trumpShift/6]
+            ^ DECLARER_KEYS[declarer];
+    }
+
+    /** Cards the player to move may play. */
+    public int legalShifts(){
+        final ThousandCardSet set = sets[turn];
+        if(trickPosition==0)
+            return set.value;
+        if(trickPosition==1)
+            return set.legalSecondShifts(firstShift,trumpShift);
+        return set.legalThirdShifts(firstShift,secondShift,trumpShift);
+    }
+
+    /** Total number of positions searched so far. */
+    public long getNodes(){
+        return this.nodes;
+    }
+
+    /** Value of the position, if everybody plays perfectly.
+        @param deadline System.nanoTime() after which search is
+        abandoned.
+        @return Declarer's small points at the end of the deal, or
+        -1 if the deadline passed. */
+    public int solve(final long deadline){
+        this.deadline = deadline;
+        this.nodesToCheck = NODES_PER_CHECK;
+        this.aborted = false;
+        final int result = this.search(Integer.MIN_VALUE,Integer.MAX_VALUE);
+        return (this.aborted ? -1 : result);
+    }
+
+    /** Value of the position after the player to move plays the
+        card, if everybody plays perfectly afterwards.
+        @see #solve */
+    public int value(final byte shift,
+                     final long deadline){
+        this.deadline = deadline;
+        this.nodesToCheck = NODES_PER_CHECK;
+        this.aborted = false;
+        final int result = this.play(shift,Integer.MIN_VALUE,Integer.MAX_VALUE);
+        return (this.aborted ? -1 : result);
+    }
+
+    //Plays the card, searches the rest and takes the card back.
+    private int play(final byte shift,
+                     final int alpha,
+                     final int beta){
+        final byte oldTurn = turn;
+        final int oldTrickPosition = trickPosition;
+        final byte oldFirstShift = firstShift;
+        final byte oldSecondShift = secondShift;
+        final byte oldTrumpShift = trumpShift;
+        final long oldHash = hash;
+        final short points0 = smallPoints[0];
+        final short points1 = smallPoints[1];
+        final short points2 = smallPoints[2];
+        final ThousandCardSet set = sets[turn];
+        final int oldValue = set.value;
+
+        hash ^= CARD_KEYS[turn][shift] ^ TURN_KEYS[turn];
+        if(trickPosition==0){
+            firstShift = shift;
+            final int result = set.removeFirstShiftPacked(shift,trumpShift);
+            smallPoints[turn] += ThousandCardSet.playPoints(result);
+            trumpShift = ThousandCardSet.playTrumpShift(result);
+            turn = (byte)((turn+1)%NUMBER_OF_PLAYERS);
+            trickPosition = 1;
+            hash ^= FIRST_KEYS[shift];
+            if(trumpShift!=oldTrumpShift)
+                hash ^= TRUMP_KEYS[oldTrumpShift/6]
+                    ^ TRUMP_KEYS[trumpShift/6];
+        }else if(trickPosition==1){
+            secondShift = shift;
+            set.removeShift(shift);
+            turn = (byte)((turn+1)%NUMBER_OF_PLAYERS);
+            trickPosition = 2;
+            hash ^= SECOND_KEYS[shift];
+        }else{
+            final int result = set.removeThirdShiftPacked(firstShift,
+                                                          secondShift,
+                                                          shift,
+                                                          trumpShift);
+            turn = (byte)((turn+ThousandCardSet.playWinnerOffset(result))
+                          %NUMBER_OF_PLAYERS);
+            smallPoints[turn] += ThousandCardSet.playPoints(result);
+            trickPosition = 0;
+            hash ^= FIRST_KEYS[firstShift] ^ SECOND_KEYS[secondShift];
+        }
+        hash ^= TURN_KEYS[turn];
+
+        final int result = this.search(alpha,beta);
+
+        set.value = oldValue;
+        smallPoints[0] = points0;
+        smallPoints[1] = points1;
+        smallPoints[2] = points2;
+        hash = oldHash;
+        trumpShift = oldTrumpShift;
+        secondShift = oldSecondShift;
+        firstShift = oldFirstShift;
+        trickPosition = oldTrickPosition;
+        turn = oldTurn;
+        return result;
+    }
+
+    //Cards left in all hands:
+    private int cardsLeft(){
+        return Integer.bitCount(sets[0].value)
+            + Integer.bitCount(sets[1].value)
+            + Integer.bitCount(sets[2].value);
+    }
+
+    private int search(int alpha,
+                       int beta){
+        this.nodes++;
+        if(--this.nodesToCheck==0){
+            this.nodesToCheck = NODES_PER_CHECK;
+            if(System.nanoTime()-this.deadline>0)
+                this.aborted = true;
+        }
+        if(this.aborted)
+            return 0;
+
+        //No more cards:
+        final int base = smallPoints[declarer];
+        if(trickPosition==0 && sets[turn].isEmpty())
+            return base;
+
+        //Two entries per position: first one is kept for positions
+        //with more cards left, second one is always replaced.
+        final int index = ((int)hash) & mask & ~1;
+        int bestShift = -1;
+        for(int i=index; i<=index+1; i++){
+            if(keys[i]!=hash)
+                continue;
+            final int entry = entries[i];
+            final int value = base + (short)entry;
+            final int bound = (entry>>>16)&3;
+            if(bound==EXACT
+               || (bound==LOWER && value>=beta)
+               || (bound==UPPER && value<=alpha))
+                return value;
+            bestShift = ((entry>>>23)&0x1F)-1;
+            break;
+        }
+
+        final int alpha0 = alpha;
+        final int beta0 = beta;
+        final boolean maximizing = (turn==declarer);
+        int best = (maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        int bestFound = -1;
+
+        //Best card found before, marriages, then by points:
+        final int legal = this.legalShifts();
+        final int set = sets[turn].value;
+        final int marriages
+            = (trickPosition!=0 ? 0
+               : (set & (NINES<<ThousandProtocol.QUEEN_SHIFT) & (set>>1))
+               | (set & (NINES<<ThousandProtocol.KING_SHIFT) & (set<<1)));
+        int tried = 0;
+        for(int group=-2; group<6 && alpha<beta; group++){
+            int moves
+                = (group==-2 ? (bestShift>=0 ? (1<<bestShift) : 0)
+                   : (group==-1 ? marriages
+                      : (NINES<<(ThousandProtocol.ACE_SHIFT-group))))
+                & legal & ~tried;
+            tried |= moves;
+            while(moves!=0 && alpha<beta){
+                final byte shift = (byte)Integer.numberOfTrailingZeros(moves);
+                moves &= moves-1;
+                final int value = this.play(shift,alpha,beta);
+                if(maximizing){
+                    if(value>best){
+                        best = value;
+                        bestFound = shift;
+                    }
+                    if(best>alpha)
+                        alpha = best;
+                }else{
+                    if(value<best){
+                        best = value;
+                        bestFound = shift;
+                    }
+                    if(best<beta)
+                        beta = best;
+                }
+            }
+        }
+        if(this.aborted)
+            return 0;
+
+        final int bound = (best<=alpha0 ? UPPER
+                           : (best>=beta0 ? LOWER : EXACT));
+        final int left = this.cardsLeft();
+        final int entry = ((best-base)&0xFFFF)
+            | (bound<<16)
+            | (left<<18)
+            | ((bestFound+1)<<23);
+        if(keys[index]==0 || ((entries[index]>>>18)&0x1F)<=left){
+            keys[index] = hash;
+            entries[index] = entry;
+        }else{
+            keys[index+1] = hash;
+            entries[index+1] = entry;
+        }
+        return best;
+    }
+}
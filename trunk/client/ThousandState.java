@@ -0,0 +1,113 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** Immutable snapshot of a whole ThousandGame position, packed in
+ * four longs, so it's cheap to copy, compare and hash. See
+ * ThousandGame.getState() for the layout.
+ */
+public final class ThousandState{
+
+    public static final int WORDS = 4;
+
+    private final long word0;
+    private final long word1;
+    private final long word2;
+    private final long word3;
+
+    public ThousandState(final long word0,
+                         final long word1,
+                         final long word2,
+                         final long word3){
+        this.word0 = word0;
+        this.word1 = word1;
+        this.word2 = word2;
+        this.word3 = word3;
+    }
+
+    public ThousandState(final long[] words, final int offset){
+        this(words[offset],words[offset+1],words[offset+2],words[offset+3]);
+    }
+
+    public long getWord(final int index){
+        switch(index){
+        case 0: return word0;
+        case 1: return word1;
+        case 2: return word2;
+        case 3: return word3;
+        default: throw new IndexOutOfBoundsException("index="+index);
+        }
+    }
+
+    public void write(final long[] words, final int offset){
+        words[offset] = word0;
+        words[offset+1] = word1;
+        words[offset+2] = word2;
+        words[offset+3] = word3;
+    }
+
+    public boolean equals(final Object object){
+        if(!(object instanceof ThousandState))
+            return false;
+        final ThousandState that = (ThousandState)object;
+        return word0==that.word0
+            && word1==that.word1
+            && word2==that.word2
+            && word3==that.word3;
+    }
+
+    public int hashCode(){
+        return hash(word0,word1,word2,word3);
+    }
+
+    /** Hash of the four words, same as hashCode() of a state made of
+        them. Mixes all bits, so it's good for open addressing too. */
+    public static int hash(final long word0,
+                           final long word1,
+                           final long word2,
+                           final long word3){
+        long h = word0*0x9E3779B97F4A7C15L;
+        h = (h^word1)*0x9E3779B97F4A7C15L;
+        h = (h^word2)*0x9E3779B97F4A7C15L;
+        h = (h^word3)*0x9E3779B97F4A7C15L;
+        return (int)(h^(h>>>32));
+    }
+
+    public String toString(){
+        return Long.toHexString(word0)
+            + ":" + Long.toHexString(word1)
+            + ":" + Long.toHexString(word2)
+            + ":" + Long.toHexString(word3);
+    }
+}
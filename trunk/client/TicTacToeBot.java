@@ -0,0 +1,114 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** Tic-tac-toe player which never loses, using solved positions of
+ * TicTacToeEngine. Same rules and results as TicTacToeLogic, but
+ * choosing a move is a single table read.
+ */
+public class TicTacToeBot implements GameLogic{
+
+    //Stones of X (turn game player 0) and O (1):
+    private final int[] stones;
+    private byte turn;
+    private byte myTurnGamePlayer;
+    //Reused for decoding moves:
+    private final TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE moveView
+        = new TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE();
+
+    public TicTacToeBot(){
+        this.stones = new int[2];
+    }
+
+    public byte getNumberOfPlayers(){
+        return 2;
+    }
+
+    public boolean initialize(final Table table,
+                              final MessageBuffer initialMessage){
+        this.stones[0] = 0;
+        this.stones[1] = 0;
+        this.turn = 0;
+        this.myTurnGamePlayer = table.myTurnGamePlayer;
+        return true;
+    }
+
+    public int moveMade(final MessageBuffer move,
+                        final int[] endResult){
+
+        if(!this.moveView.wrap(move))
+            return INVALID|END;
+
+        final byte row = this.moveView.row();
+        final byte column = this.moveView.column();
+
+        if(row<0 || row>2 || column<0 || column>2)
+            return INVALID|END;
+
+        final int bit = 1<<(3*row+column);
+        if(((stones[0]|stones[1])&bit)!=0)
+            return INVALID|END;
+
+        stones[turn] |= bit;
+
+        if(TicTacToeEngine.isWin(stones[turn])){
+            endResult[turn] = 1000000;
+            endResult[1-turn] = 0;
+            return VALID|END;
+        }
+
+        if((stones[0]|stones[1])==TicTacToeEngine.FULL){
+            endResult[0] = 0;
+            endResult[1] = 0;
+            return VALID|END;
+        }
+
+        turn = (byte)(1-turn);
+        return VALID|CONTINUE;
+    }
+
+    public MessageBuffer nextMove(){
+        if(turn!=myTurnGamePlayer)
+            return null;
+        final byte cell = TicTacToeEngine.bestMove(stones[0],stones[1]);
+        if(cell==-1)
+            return null;
+        return TicTacToeProtocol.serialize_1_TIC_TAC_TOE_MOVE
+            ((byte)(cell/3),(byte)(cell%3));
+    }
+
+    public boolean serverEchoes(final MessageBuffer move){
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+/** Tic-tac-toe without user interface, on bitboards: bit
+ * 3*row+column of a mask is set if the player has a stone
+ * there. Every reachable position is solved once, when the class is
+ * loaded, so looking up its value and best move costs one table
+ * read.
+ */
+public class TicTacToeEngine{
+
+    //Values, for the player to move:
+    public static final byte LOSS = 0;
+    public static final byte DRAW = 1;
+    public static final byte WIN = 2;
+
+    public static final int FULL = 0x1FF;
+
+    private static final int[] LINES = {0x007,0x038,0x1C0, //rows
+                                        0x049,0x092,0x124, //columns
+                                        0x111,0x054};      //diagonals
+
+    //Whether a mask contains a line:
+    private static final boolean[] WINNING = new boolean[512];
+    //Mask as a base 3 number with digits 0 and 1:
+    private static final short[] BASE3 = new short[512];
+
+    //Indexed by index(x,o). Bits 0-1: value for the player to move,
+    //bits 2-5: best move, 9 if game is over. -1 if not reachable:
+    private static final byte[] TABLE = new byte[19683];
+
+    static{
+        for(int mask=0; mask<512; mask++){
+            for(final int line : LINES)
+                if((mask&line)==line)
+                    WINNING[mask] = true;
+            int base3 = 0;
+            for(int cell=8; cell>=0; cell--)
+                base3 = 3*base3 + ((mask>>cell)&1);
+            BASE3[mask] = (short)base3;
+        }
+        java.util.Arrays.fill(TABLE,(byte)-1);
+        solve(0,0);
+    }
+
+    private static int index(final int x, final int o){
+        return BASE3[x] + 2*BASE3[o];
+    }
+
+    //Negamax over all positions, remembering each in TABLE:
+    private static byte solve(final int x, final int o){
+        final int index = index(x,o);
+        if(TABLE[index]!=-1)
+            return (byte)(TABLE[index]&0x3);
+
+        final boolean xToMove = Integer.bitCount(x)==Integer.bitCount(o);
+        final int mover = (xToMove ? x : o);
+        final int other = (xToMove ? o : x);
+        byte bestValue;
+        int bestMove = 9;
+        if(WINNING[other]){
+            bestValue = LOSS;
+        }else if((x|o)==FULL){
+            bestValue = DRAW;
+        }else{
+            bestValue = -1;
+            for(int cell=0; cell<9; cell++){
+                if(((x|o)&(1<<cell))!=0)
+                    continue;
+                final byte value = (byte)(WIN - (xToMove
+                                                 ? solve(x|(1<<cell),o)
+                                                 : solve(x,o|(1<<cell))));
+                if(value>bestValue){
+                    bestValue = value;
+                    bestMove = cell;
+                }
+            }
+        }
+        TABLE[index] = (byte)(bestValue | (bestMove<<2));
+        return bestValue;
+    }
+
+    /** Whether the stones contain a full line. */
+    public static boolean isWin(final int mask){
+        return WINNING[mask];
+    }
+
+    /** Whether x and o stones could appear in a game, X moving
+        first. */
+    public static boolean isReachable(final int x, final int o){
+        return (x&o)==0 && x<=FULL && o<=FULL && TABLE[index(x,o)]!=-1;
+    }
+
+    /** WIN, DRAW or LOSS for the player to move, with perfect play
+        from both sides. Position must be reachable. */
+    public static byte value(final int x, final int o){
+        return (byte)(TABLE[index(x,o)]&0x3);
+    }
+
+    /** Cell (3*row+column) of a move keeping value(), or -1 if the
+        game is over. Position must be reachable. */
+    public static byte bestMove(final int x, final int o){
+        final int move = (TABLE[index(x,o)]>>2)&0xF;
+        return (byte)(move==9 ? -1 : move);
+    }
+}
@@ -0,0 +1,130 @@
+/* -*- Mode: java; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ * vim:expandtab:shiftwidth=4:tabstop=4: */
+
+
+/*
+    FSOG - Free Software Online Games
+    Copyright (C) 2007 Bartlomiej Antoni Szymczak
+
+    This file is part of FSOG.
+
+    FSOG is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License as
+    published by the Free Software Foundation, either version 3 of the
+    License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Affero General Public License for more details.
+
+    You should have received a copy of the GNU Affero General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+/*
+    You can contact the author, Bartlomiej Antoni Szymczak, by:
+    - electronic mail: rhywek@gmail.com
+    - paper mail:
+        Bartlomiej Antoni Szymczak
+        Boegesvinget 8, 1. sal
+        2740 Skovlunde
+        Denmark
+*/
+
+import java.util.Random;
+
+/** Tic-tac-toe rules without user interface. Same rules as in
+ * JTicTacToeBoard. Our moves are chosen at random among empty
+ * fields.
+ */
+public class TicTacToeLogic implements GameLogic{
+
+    //0 -- empty, 1 -- X, 2 -- O:
+    private final byte[][] board;
+    private int empty;
+    private byte turn;
+    private byte myTurnGamePlayer;
+    private final Random random;
+    //Reused for decoding moves:
+    private final TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE moveView
+        = new TicTacToeProtocol.View_1_TIC_TAC_TOE_MOVE();
+
+    public TicTacToeLogic(){
+        this(new Random());
+    }
+
+    public TicTacToeLogic(final Random random){
+        this.board = new byte[3][3];
+        this.random = random;
+    }
+
+    public byte getNumberOfPlayers(){
+        return 2;
+    }
+
+    public boolean initialize(final Table table,
+                              final MessageBuffer initialMessage){
+        for(byte row=0; row<3; row++)
+            for(byte column=0; column<3; column++)
+                this.board[row][column] = 0;
+        this.empty = 9;
+        this.turn = 0;
+        this.myTurnGamePlayer = table.myTurnGamePlayer;
+        return true;
+    }
+
+    public int moveMade(final MessageBuffer move,
+                        final int[] endResult){
+
+        if(!this.moveView.wrap(move))
+            return INVALID|END;
+
+        final byte row = this.moveView.row();
+        final byte column = this.moveView.column();
+
+        if(row<0 || row>2 || column<0 || column>2 || board[row][column]!=0)
+            return INVALID|END;
+
+        final byte c = (byte)(turn+1);
+        board[row][column] = c;
+        empty--;
+
+        if( (board[row][0]==c && board[row][1]==c && board[row][2]==c)
+            ||(board[0][column]==c && board[1][column]==c && board[2][column]==c)
+            ||(board[0][0]==c && board[1][1]==c && board[2][2]==c)
+            ||(board[0][2]==c && board[1][1]==c && board[2][0]==c)){
+            endResult[turn] = 1000000;
+            endResult[1-turn] = 0;
+            return VALID|END;
+        }
+
+        if(empty==0){
+            endResult[0] = 0;
+            endResult[1] = 0;
+            return VALID|END;
+        }
+
+        turn = (byte)(1-turn);
+        return VALID|CONTINUE;
+    }
+
+    public MessageBuffer nextMove(){
+        if(turn!=myTurnGamePlayer || empty==0)
+            return null;
+
+        //Pick n-th empty field:
+        int n = this.random.nextInt(empty);
+        for(byte row=0; row<3; row++)
+            for(byte column=0; column<3; column++)
+                if(board[row][column]==0 && n--==0)
+                    return TicTacToeProtocol.serialize_1_TIC_TAC_TOE_MOVE
+                        (row,column);
+        return null;
+    }
+
+    public boolean serverEchoes(final MessageBuffer move){
+        return false;
+    }
+}
@@ -46,6 +46,19 @@ public class TicTacToeProtocol{
   //Constants:
 
 
+  //Message type for every message type byte,
+  //indexed by that byte.
+  private static final MessageType[] MESSAGE_TYPES = {
+    MessageType.UNKNOWN_MESSAGE_1,
+    MessageType.TIC_TAC_TOE_MOVE_1};
+
+  //Message type for a given message type byte.
+  public static MessageType lookupMessageType(final byte messageTypeByte){
+    if(messageTypeByte<0 || messageTypeByte>=MESSAGE_TYPES.length)
+      return MessageType.UNKNOWN_MESSAGE_1;
+    return MESSAGE_TYPES[messageTypeByte];
+  }
+
   //This method can be used for rapid message
   //type lookup, so you don't need to try
   //deserializing using all deserializers.
@@ -54,23 +67,29 @@ public class TicTacToeProtocol{
   //some known type. It doesn't read the whole
   //message, just the part where message type
   //is present.
-  public static MessageType lookupMessageType(final Vector<Byte> message){
-    try{
-        final Iterator<Byte> iterator
-         = message.iterator();
-        
-        Message.read1Byte(iterator);
-        
-        final byte byteMessageType
-         = Message.read1Byte(iterator);
-        
-        switch(byteMessageType){
-        case 1: return MessageType.TIC_TAC_TOE_MOVE_1;
-        default: return MessageType.UNKNOWN_MESSAGE_1;
-        }
-    }catch(Exception e){
-        return MessageType.UNKNOWN_MESSAGE_1;
-    }
+  public static MessageType lookupMessageType(final MessageBuffer message){
+    if(message.size()<2)
+      return MessageType.UNKNOWN_MESSAGE_1;
+    return lookupMessageType(message.get(1));
+  }
+
+  //Sizes of serialized messages, known when this file
+  //was generated. Indexed by MessageType.ordinal().
+  private static final int[] FIXED_ENCODED_SIZE
+   = {-1,4};
+  private static final int[] MINIMUM_ENCODED_SIZE
+   = {2,4};
+
+  //Exact size of every message of this type, or -1 if
+  //it contains strings or binary data.
+  public static int fixedEncodedSize(final MessageType messageType){
+    return FIXED_ENCODED_SIZE[messageType.ordinal()];
+  }
+
+  //Size of the shortest message of this type. A message
+  //shorter than that can't be deserialized.
+  public static int minimumEncodedSize(final MessageType messageType){
+    return MINIMUM_ENCODED_SIZE[messageType.ordinal()];
   }
 
   //Message TIC_TAC_TOE_MOVE:
@@ -80,13 +99,18 @@ public class TicTacToeProtocol{
   //In protocol version 1 this message has id 1.
   //Simple TicTacToe move. No need to say who made this move.
 
-  public static Vector<Byte> serialize_1_TIC_TAC_TOE_MOVE(
+  //Exact number of bytes serialize_1_TIC_TAC_TOE_MOVE will produce.
+  public static int encodedSize_1_TIC_TAC_TOE_MOVE(){
+    return 4;
+  }
+
+  public static MessageBuffer serialize_1_TIC_TAC_TOE_MOVE(
         //In which row player puts her X or O.
         final byte row,
         //In which column player puts her X or O.
         final byte column){
-    final Vector<Byte> outputMessage
-     = new Vector<Byte>();
+    final MessageBuffer outputMessage
+     = new MessageBuffer(encodedSize_1_TIC_TAC_TOE_MOVE());
 
     //Let the receiver know which protocol version this is:
     Message.append1Byte(1,outputMessage);
@@ -105,52 +129,118 @@ public class TicTacToeProtocol{
     public final byte row;
     //In which column player puts her X or O.
     public final byte column;
-    public Deserialized_1_TIC_TAC_TOE_MOVE(final Vector<Byte> inputMessage)
+    public Deserialized_1_TIC_TAC_TOE_MOVE(final MessageBuffer inputMessage)
       throws MessageDeserializationException{
-      try{
-        final Iterator<Byte> iterator
-         = inputMessage.iterator();
+        inputMessage.rewind();
 
         //Check protocol version:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
         //Check kind of message:
-        if(iterator.next()!=1)
+        if(Message.read1Byte(inputMessage)!=1)
           throw new MessageDeserializationException();
 
     //Deserialize row:
-      this.row = Message.read1Byte(iterator);
+      this.row = Message.read1Byte(inputMessage);
     //Deserialize column:
-      this.column = Message.read1Byte(iterator);
-      }catch(NoSuchElementException e){
-        throw new MessageDeserializationException(e);
-      }
+      this.column = Message.read1Byte(inputMessage);
     }
   }
 
+  //Reusable view of a TIC_TAC_TOE_MOVE message. Unlike
+  //Deserialized_1_TIC_TAC_TOE_MOVE it doesn't copy anything,
+  //so getters are only valid until the next wrap(...)
+  //and while the wrapped message is not modified.
+  public static final class View_1_TIC_TAC_TOE_MOVE{
+    private MessageBuffer message;
+    private int rowOffset;
+    private int columnOffset;
+
+    //Returns false if message is not a well-formed
+    //TIC_TAC_TOE_MOVE. Doesn't move its read cursor.
+    public boolean wrap(final MessageBuffer message){
+      final int end = message.size();
+      if(end<2
+         || message.get(0)!=1
+         || message.get(1)!=1)
+        return false;
+
+      int position = 2;
+      this.rowOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.columnOffset = position;
+      position += 1;
+      if(position>end)
+        return false;
+      this.message = message;
+      return true;
+    }
 
-  public static boolean handle(final Vector<Byte> message,
-                               final TicTacToeHandler handler){
+    //In which row player puts her X or O.
+    public byte row(){
+      return Message.read1Byte(this.message,this.rowOffset);
+    }
 
-    switch(TicTacToeProtocol.lookupMessageType(message))
-    {
-    case TIC_TAC_TOE_MOVE_1:
-      {
-        try{
-          final TicTacToeProtocol.Deserialized_1_TIC_TAC_TOE_MOVE deserialized = 
-              new TicTacToeProtocol.Deserialized_1_TIC_TAC_TOE_MOVE(message);
-        return handler.handle_1_TIC_TAC_TOE_MOVE(deserialized.row,
-                      deserialized.column);
-        }catch(final MessageDeserializationException e){
-          return false;
-        }
+    //In which column player puts her X or O.
+    public byte column(){
+      return Message.read1Byte(this.message,this.columnOffset);
     }
-    default:
-      return false;
+  }
+
+
+  //Dispatches messages to a handler using views, so
+  //handling a message doesn't allocate anything. Binary
+  //arguments passed to the handler are only valid
+  //during the call. One decoder per thread.
+  public static final class Decoder{
+    private final View_1_TIC_TAC_TOE_MOVE view_TIC_TAC_TOE_MOVE
+      = new View_1_TIC_TAC_TOE_MOVE();
+
+    public boolean handle(final MessageBuffer message,
+                          final TicTacToeHandler handler){
+      return this.handle(message,
+                         lookupMessageType(message),
+                         handler);
+    }
+
+    //For callers which already know the message type.
+    public boolean handle(final MessageBuffer message,
+                          final MessageType messageType,
+                          final TicTacToeHandler handler){
+
+      switch(messageType)
+      {
+      case TIC_TAC_TOE_MOVE_1:
+        return this.view_TIC_TAC_TOE_MOVE.wrap(message)
+          && handler.handle_1_TIC_TAC_TOE_MOVE(this.view_TIC_TAC_TOE_MOVE.row(),
+                      this.view_TIC_TAC_TOE_MOVE.column());
+      default:
+        return false;
+      }
     }
   }
 
+  private static final ThreadLocal<Decoder> decoder
+   = new ThreadLocal<Decoder>(){
+      protected Decoder initialValue(){
+        return new Decoder();
+      }
+    };
+
+  public static boolean handle(final MessageBuffer message,
+                               final TicTacToeHandler handler){
+    return decoder.get().handle(message,handler);
+  }
+
+  public static boolean handle(final MessageBuffer message,
+                               final MessageType messageType,
+                               final TicTacToeHandler handler){
+    return decoder.get().handle(message,messageType,handler);
+  }
+
 public static interface TicTacToeHandler
 {
 
@@ -68,6 +68,11 @@ public abstract class PieceType{
     public abstract String getReader
         (final List<FlagSetDefinition> flagSetDefinitions);
 
+    /** Number of bytes this piece always takes in a serialized
+     * message, or -1 if it depends on the value. */
+    public abstract int getFixedSize
+        (final List<FlagSetDefinition> flagSetDefinitions);
+
     public static PieceType INT8
         = new PieceType(){
                 public String toCppType(final List<FlagSetDefinition> flagSetDefinitions){return "int8_t";}
@@ -81,6 +86,7 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "read1Byte";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return 1;}
             };
     
     public static PieceType INT16
@@ -96,6 +102,7 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "read2Bytes";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return 2;}
             };
     
     public static PieceType INT24
@@ -111,6 +118,7 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "read3Bytes";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return 3;}
             };
 
     public static PieceType INT32
@@ -126,6 +134,7 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "read4Bytes";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return 4;}
             };
     
     public static PieceType INT64
@@ -141,6 +150,7 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "read8Bytes";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return 8;}
             };
     
     public static PieceType CSTRING
@@ -156,21 +166,23 @@ public abstract class PieceType{
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "readCString";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return -1;}
             };
     
     public static PieceType BINARY
         = new PieceType(){
                 public String toCppType(final List<FlagSetDefinition> flagSetDefinitions){return "std::vector<char>";}
-                public String toJavaType(final List<FlagSetDefinition> flagSetDefinitions){return "java.util.Vector<Byte>";}
-                public String toJavaReferenceType(final List<FlagSetDefinition> flagSetDefinitions){return "java.util.Vector<Byte>";}
+                public String toJavaType(final List<FlagSetDefinition> flagSetDefinitions){return "MessageBuffer";}
+                public String toJavaReferenceType(final List<FlagSetDefinition> flagSetDefinitions){return "MessageBuffer";}
                 public String toCppConstType(final List<FlagSetDefinition> flagSetDefinitions){return "const std::vector<char>&";}
-                public String toJavaFinalType(final List<FlagSetDefinition> flagSetDefinitions){return "final java.util.Vector<Byte>";}
+                public String toJavaFinalType(final List<FlagSetDefinition> flagSetDefinitions){return "final MessageBuffer";}
                 public String getAppender(final List<FlagSetDefinition> flagSetDefinitions){
                     return "appendBinary";
                 }
                 public String getReader(final List<FlagSetDefinition> flagSetDefinitions){
                     return "readBinary";
                 }
+                public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return -1;}
             };
 
     public static PieceType VECTOR(final PieceType t){
@@ -183,6 +195,7 @@ public abstract class PieceType{
             public String toJavaFinalType(final List<FlagSetDefinition> flagSetDefinitions){return "final java.util.Vector<"+t.toJavaReferenceType(flagSetDefinitions)+">";}
             public String getAppender(final List<FlagSetDefinition> flagSetDefinitions){return "appendVector";}
             public String getReader(final List<FlagSetDefinition> flagSetDefinitions){return "readVector";}
+            public int getFixedSize(final List<FlagSetDefinition> flagSetDefinitions){return -1;}
         };
     }
             
@@ -389,6 +402,36 @@ public abstract class PieceType{
                 ("No such flag set definition:"
                  +flagSetDefinitionName);
         }
+
+        public int getFixedSize
+            (final List<FlagSetDefinition> flagSetDefinitions)
+        {
+            for(FlagSetDefinition flagSetDefinition
+                    : flagSetDefinitions){
+                if(flagSetDefinition.name!=this.flagSetDefinitionName)
+                    continue;
+
+                final int size
+                    = flagSetDefinition.flagDefinitions.length;
+                if(size>0 && size<=8){
+                    return 1;
+                } else if(size>8 && size<=16){
+                    return 2;
+                } else if(size>16 && size<=24){
+                    return 3;
+                } else if(size>16 && size<=32){
+                    return 4;
+                } else{
+                    throw new UnsupportedOperationException("The flag set "
+                                                 +flagSetDefinition.name
+                                                 +" has unsupported size:"
+                                                 +size);
+                }
+            }
+            throw new UnsupportedOperationException
+                ("No such flag set definition:"
+                 +flagSetDefinitionName);
+        }
     }
 
     //To be used by the user defining the protocol:
@@ -465,6 +465,34 @@ public class ProtocolDefinition{
         if(this.messageDefinitions.isEmpty())
             return;
 
+        int highestIdentifier = 0;
+        for(MessageDefinition messageDefinition: this.messageDefinitions)
+            highestIdentifier = Math.max(highestIdentifier,
+                                         messageDefinition.identifier);
+
+        final String[] types = new String[highestIdentifier+1];
+        Arrays.fill(types,"MessageType.UNKNOWN_MESSAGE_"+this.protocolVersion);
+        for(MessageDefinition messageDefinition: this.messageDefinitions)
+            types[messageDefinition.identifier]
+                = "MessageType."+messageDefinition.name+"_"+this.protocolVersion;
+
+        this.javaWrite("  //Message type for every message type byte,\n"
+                       +"  //indexed by that byte.\n"
+                       +"  private static final MessageType[] MESSAGE_TYPES = {");
+        for(int i=0;i<types.length;i++)
+            this.javaWrite((i>0?",":"")+"\n    "+types[i]);
+        this.javaWrite("};\n\n");
+
+        this.javaWrite("  //Message type for a given message type byte.\n"
+                       +"  public static MessageType lookupMessageType("
+                       +"final byte messageTypeByte){\n"
+                       +"    if(messageTypeByte<0 || messageTypeByte>="
+                       +"MESSAGE_TYPES.length)\n"
+                       +"      return MessageType.UNKNOWN_MESSAGE_"
+                       +this.protocolVersion+";\n"
+                       +"    return MESSAGE_TYPES[messageTypeByte];\n"
+                       +"  }\n\n");
+
         this.javaWrite("  //This method can be used for rapid message\n"
                        +"  //type lookup, so you don't need to try\n"
                        +"  //deserializing using all deserializers.\n"
@@ -474,39 +502,114 @@ public class ProtocolDefinition{
                        +"  //message, just the part where message type\n"
                        +"  //is present.\n");
 
-        final String highestMessageName
-            = this.messageDefinitions.lastElement().name;
-
         this.javaWrite("  public static MessageType lookupMessageType("
-                       +"final Vector<Byte> message){\n"
-                       +"    try{\n"
-                       +"        final Iterator<Byte> iterator\n"
-                       +"         = message.iterator();\n"
-                       +"        \n"
-                       +"        Message.read1Byte(iterator);\n"
-                       +"        \n"
-                       +"        final byte byteMessageType\n"
-                       +"         = Message.read1Byte(iterator);\n"
-                       +"        \n"
-                       +"        switch(byteMessageType){\n");
-
-        for(MessageDefinition messageDefinition: this.messageDefinitions){
-            this.javaWrite("        case "+messageDefinition.identifier
-                           +": return MessageType."
-                           +messageDefinition.name+"_"
-                           +this.protocolVersion+";\n");
-        }
-
-        this.javaWrite("        default: return MessageType."
-                       +"UNKNOWN_MESSAGE_"+this.protocolVersion+";\n"
-                       +"        }\n"
-                       +"    }catch(Exception e){\n"
-                       +"        return MessageType.UNKNOWN_MESSAGE_"
+                       +"final MessageBuffer message){\n"
+                       +"    if(message.size()<2)\n"
+                       +"      return MessageType.UNKNOWN_MESSAGE_"
                        +this.protocolVersion+";\n"
-                       +"    }\n"
+                       +"    return lookupMessageType(message.get(1));\n"
                        +"  }\n\n");
     }
 
+    //Bytes taken by a message in the best case, i.e. when all
+    //variable-size pieces are empty.
+    private int minimumEncodedSize(final MessageDefinition messageDefinition){
+        int size = 2;
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+            final int pieceSize
+                = pieceDefinition.type.getFixedSize(this.flagSetDefinitions);
+            if(pieceSize>=0)
+                size += pieceSize;
+            else if(pieceDefinition.type==PieceType.CSTRING)
+                size += 1;
+            else
+                size += 2;
+        }
+        return size;
+    }
+
+    private boolean hasFixedSize(final MessageDefinition messageDefinition){
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions)
+            if(pieceDefinition.type.getFixedSize(this.flagSetDefinitions)<0)
+                return false;
+        return true;
+    }
+
+    //Java expression for the bytes taken by a variable-size piece
+    //on top of its minimum size.
+    private String javaExtraEncodedSize(final PieceDefinition pieceDefinition){
+        if(pieceDefinition.type==PieceType.CSTRING)
+            return pieceDefinition.name+".length()";
+        else
+            return pieceDefinition.name+".size()";
+    }
+
+    //Writes encodedSize_N_X(...) taking the variable-size pieces
+    //of the message and returning its exact serialized size.
+    private void javaWriteEncodedSize(final MessageDefinition messageDefinition)
+        throws IOException
+    {
+        final StringBuilder parameters = new StringBuilder();
+        final StringBuilder sum = new StringBuilder();
+        sum.append(minimumEncodedSize(messageDefinition));
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+            if(pieceDefinition.type.getFixedSize(this.flagSetDefinitions)>=0)
+                continue;
+            if(parameters.length()>0)
+                parameters.append(",\n        ");
+            parameters.append(pieceDefinition.type.toJavaFinalType(this.flagSetDefinitions));
+            parameters.append(" "+pieceDefinition.name);
+            sum.append("\n      +"+javaExtraEncodedSize(pieceDefinition));
+        }
+
+        final String method
+            = "  //Exact number of bytes serialize_"
+            +protocolVersion+"_"+messageDefinition.name+" will produce.\n"
+            +"  public static int encodedSize_"
+            +protocolVersion+"_"+messageDefinition.name+"("
+            +parameters+"){\n"
+            +"    return "+sum+";\n"
+            +"  }\n\n";
+
+        javaWrite(method);
+    }
+
+    private void javaWriteEncodedSizeTables()
+        throws IOException
+    {
+        if(this.messageDefinitions.isEmpty())
+            return;
+
+        //Indexed by MessageType.ordinal(), UNKNOWN_MESSAGE comes first.
+        final StringBuilder fixed = new StringBuilder("-1");
+        final StringBuilder minimum = new StringBuilder("2");
+        for(MessageDefinition messageDefinition : this.messageDefinitions){
+            fixed.append(","+(hasFixedSize(messageDefinition)
+                              ?minimumEncodedSize(messageDefinition)
+                              :-1));
+            minimum.append(","+minimumEncodedSize(messageDefinition));
+        }
+
+        javaWrite("  //Sizes of serialized messages, known when this file\n"
+                  +"  //was generated. Indexed by MessageType.ordinal().\n"
+                  +"  private static final int[] FIXED_ENCODED_SIZE\n"
+                  +"   = {"+fixed+"};\n"
+                  +"  private static final int[] MINIMUM_ENCODED_SIZE\n"
+                  +"   = {"+minimum+"};\n"
+                  +"\n"
+                  +"  //Exact size of every message of this type, or -1 if\n"
+                  +"  //it contains strings or binary data.\n"
+                  +"  public static int fixedEncodedSize(final MessageType messageType){\n"
+                  +"    return FIXED_ENCODED_SIZE[messageType.ordinal()];\n"
+                  +"  }\n"
+                  +"\n"
+                  +"  //Size of the shortest message of this type. A message\n"
+                  +"  //shorter than that can't be deserialized.\n"
+                  +"  public static int minimumEncodedSize(final MessageType messageType){\n"
+                  +"    return MINIMUM_ENCODED_SIZE[messageType.ordinal()];\n"
+                  +"  }\n\n");
+    }
+
     private void writeMessageDefinition(final MessageDefinition messageDefinition)
         throws Exception
     {
@@ -515,6 +618,7 @@ public class ProtocolDefinition{
 
         final String s0
             ="  //"+"Message "+messageDefinition.name+":\n\n"
+            +"  //This message will create: "+messageDefinition.create+".\n\n"
             +"  //In protocol version "+protocolVersion
             +" this message has id "+messageDefinition.identifier
             +".\n"
@@ -529,7 +633,9 @@ public class ProtocolDefinition{
                      +protocolVersion+"_"
                      +messageDefinition.name+"(");
         if(messageDefinition.create.contains(Create.JAVA_SERIALIZER))
-            javaWrite("  public static Vector<Byte> serialize_"
+            javaWriteEncodedSize(messageDefinition);
+        if(messageDefinition.create.contains(Create.JAVA_SERIALIZER))
+            javaWrite("  public static MessageBuffer serialize_"
                       +protocolVersion+"_"
                       +messageDefinition.name+"(");
 
@@ -572,8 +678,20 @@ public class ProtocolDefinition{
 
         if(messageDefinition.create.contains(Create.JAVA_SERIALIZER))
             javaWrite("){\n"
-                      +"    final Vector<Byte> outputMessage\n"
-                      +"     = new Vector<Byte>();\n\n"
+                      +"    final MessageBuffer outputMessage\n"
+                      +"     = new MessageBuffer(encodedSize_"
+                      +protocolVersion+"_"+messageDefinition.name+"(");
+        if(messageDefinition.create.contains(Create.JAVA_SERIALIZER)){
+            boolean first = true;
+            for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+                if(pieceDefinition.type.getFixedSize(this.flagSetDefinitions)>=0)
+                    continue;
+                javaWrite((first?"":",")+pieceDefinition.name);
+                first = false;
+            }
+        }
+        if(messageDefinition.create.contains(Create.JAVA_SERIALIZER))
+            javaWrite("));\n\n"
                       +"    //Let the receiver know which "
                       +"protocol version this is:\n"
                       +"    Message.append1Byte("+protocolVersion
@@ -756,16 +874,14 @@ public class ProtocolDefinition{
         if(messageDefinition.create.contains(Create.JAVA_DESERIALIZER)){
             javaWrite("    public Deserialized_"
                       +this.protocolVersion+"_"
-                      +messageDefinition.name+"(final Vector<Byte> inputMessage)\n"
+                      +messageDefinition.name+"(final MessageBuffer inputMessage)\n"
                       +"      throws MessageDeserializationException{\n"
-                      +"      try{\n"
-                      +"        final Iterator<Byte> iterator\n"
-                      +"         = inputMessage.iterator();\n\n"
+                      +"        inputMessage.rewind();\n\n"
                       +"        //Check protocol version:\n"
-                      +"        if(iterator.next()!="+this.protocolVersion+")\n"
+                      +"        if(Message.read1Byte(inputMessage)!="+this.protocolVersion+")\n"
                       +"          throw new MessageDeserializationException();\n\n"
                       +"        //Check kind of message:\n"
-                      +"        if(iterator.next()!="
+                      +"        if(Message.read1Byte(inputMessage)!="
                       +messageDefinition.identifier+")\n"
                       +"          throw new MessageDeserializationException();\n\n");
         
@@ -775,18 +891,107 @@ public class ProtocolDefinition{
                           +"      this."+pieceDefinition.name
                           +" = Message."
                           +pieceDefinition.type.getReader(this.flagSetDefinitions)
-                          +"(iterator);\n");
+                          +"(inputMessage);\n");
             }
         
-            javaWrite("      }catch(NoSuchElementException e){\n"
-                      +"        throw new MessageDeserializationException(e);\n"
-                      +"      }\n"
-                      +"    }\n"
+            javaWrite("    }\n"
                       +"  }\n\n");
+
+            javaWriteView(messageDefinition);
         }
         //End of deserialization.
     }
 
+    //Binary and vector pieces are exposed by views as MessageBuffers
+    //sharing bytes with the wrapped message.
+    private boolean isJavaViewBuffer(final PieceDefinition pieceDefinition){
+        return pieceDefinition.type.getFixedSize(this.flagSetDefinitions)<0
+            && pieceDefinition.type!=PieceType.CSTRING;
+    }
+
+    private void javaWriteView(final MessageDefinition messageDefinition)
+        throws IOException
+    {
+        final String viewName
+            = "View_"+this.protocolVersion+"_"+messageDefinition.name;
+
+        javaWrite("  //Reusable view of a "+messageDefinition.name+" message. Unlike\n"
+                  +"  //Deserialized_"+this.protocolVersion+"_"
+                  +messageDefinition.name+" it doesn't copy anything,\n"
+                  +"  //so getters are only valid until the next wrap(...)\n"
+                  +"  //and while the wrapped message is not modified.\n"
+                  +"  public static final class "+viewName+"{\n"
+                  +"    private MessageBuffer message;\n");
+
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+            javaWrite("    private int "+pieceDefinition.name+"Offset;\n");
+            if(isJavaViewBuffer(pieceDefinition))
+                javaWrite("    private final MessageBuffer "+pieceDefinition.name
+                          +" = new MessageBuffer(0);\n");
+        }
+
+        javaWrite("\n"
+                  +"    //Returns false if message is not a well-formed\n"
+                  +"    //"+messageDefinition.name+". Doesn't move its read cursor.\n"
+                  +"    public boolean wrap(final MessageBuffer message){\n"
+                  +"      final int end = message.size();\n"
+                  +"      if(end<2\n"
+                  +"         || message.get(0)!="+this.protocolVersion+"\n"
+                  +"         || message.get(1)!="+messageDefinition.identifier+")\n"
+                  +"        return false;\n");
+
+        if(messageDefinition.pieceDefinitions.length>0)
+            javaWrite("\n"
+                      +"      int position = 2;\n");
+
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+            final int size
+                = pieceDefinition.type.getFixedSize(this.flagSetDefinitions);
+            javaWrite("      this."+pieceDefinition.name+"Offset = position;\n");
+            if(size>=0)
+                javaWrite("      position += "+size+";\n"
+                          +"      if(position>end)\n"
+                          +"        return false;\n");
+            else
+                javaWrite("      position = Message."
+                          +(pieceDefinition.type==PieceType.CSTRING
+                            ?"skipCString"
+                            :"skipBinary")
+                          +"(message,position,end);\n"
+                          +"      if(position<0)\n"
+                          +"        return false;\n");
+        }
+
+        javaWrite("      this.message = message;\n"
+                  +"      return true;\n"
+                  +"    }\n");
+
+        for(PieceDefinition pieceDefinition : messageDefinition.pieceDefinitions){
+            javaWrite("\n"
+                      +"    //"+pieceDefinition.comment+"\n");
+            if(isJavaViewBuffer(pieceDefinition))
+                javaWrite("    public MessageBuffer "+pieceDefinition.name+"(){\n"
+                          +"      this."+pieceDefinition.name+".wrap\n"
+                          +"        (this.message.array(),\n"
+                          +"         this.message.arrayOffset()+this."
+                          +pieceDefinition.name+"Offset+2,\n"
+                          +"         Message.readBinaryLength(this.message,this."
+                          +pieceDefinition.name+"Offset));\n"
+                          +"      return this."+pieceDefinition.name+";\n"
+                          +"    }\n");
+            else
+                javaWrite("    public "
+                          +pieceDefinition.type.toJavaType(this.flagSetDefinitions)
+                          +" "+pieceDefinition.name+"(){\n"
+                          +"      return Message."
+                          +pieceDefinition.type.getReader(this.flagSetDefinitions)
+                          +"(this.message,this."+pieceDefinition.name+"Offset);\n"
+                          +"    }\n");
+        }
+
+        javaWrite("  }\n\n");
+    }
+
     private void hppWriteHandler() throws Exception{
         if(this.messageDefinitions.isEmpty())
             return;
@@ -880,47 +1085,86 @@ public class ProtocolDefinition{
             return;
 
         javaWrite("\n"
-                  +"  public static boolean handle(final Vector<Byte> message,\n"
-                  +"                               final "+protocolName
+                  +"  //Dispatches messages to a handler using views, so\n"
+                  +"  //handling a message doesn't allocate anything. Binary\n"
+                  +"  //arguments passed to the handler are only valid\n"
+                  +"  //during the call. One decoder per thread.\n"
+                  +"  public static final class Decoder{\n");
+
+        for(MessageDefinition md : this.messageDefinitions){
+            if(md.create.contains(Create.JAVA_DESERIALIZER))
+                javaWrite("    private final View_"+protocolVersion+"_"+md.name
+                          +" view_"+md.name+"\n"
+                          +"      = new View_"+protocolVersion+"_"+md.name+"();\n");
+        }
+
+        javaWrite("\n"
+                  +"    public boolean handle(final MessageBuffer message,\n"
+                  +"                          final "+protocolName
+                  +"Handler handler){\n"
+                  +"      return this.handle(message,\n"
+                  +"                         lookupMessageType(message),\n"
+                  +"                         handler);\n"
+                  +"    }\n"
+                  +"\n"
+                  +"    //For callers which already know the message type.\n"
+                  +"    public boolean handle(final MessageBuffer message,\n"
+                  +"                          final MessageType messageType,\n"
+                  +"                          final "+protocolName
                   +"Handler handler){\n"
                   +"\n"
-                  +"    switch("+className
-                  +".lookupMessageType(message))\n"
-                  +"    {\n");
+                  +"      switch(messageType)\n"
+                  +"      {\n");
 
         for(MessageDefinition md : this.messageDefinitions){
             if(md.create.contains(Create.JAVA_DESERIALIZER)){
-                javaWrite("    case "
+                javaWrite("      case "
                           +md.name+"_"+protocolVersion+":\n"
-                          +"      {\n"
-                          +"        try{\n"
-                          +"          final "+className+".Deserialized_"
-                          +protocolVersion+"_"
-                          +md.name+" deserialized = \n"
-                          +"              new "+className+".Deserialized_"
-                          +protocolVersion+"_"+md.name+"(message);\n");
-                javaWrite("        return handler.handle_"+protocolVersion
+                          +"        return this.view_"+md.name+".wrap(message)\n"
+                          +"          && handler.handle_"+protocolVersion
                           +"_"+md.name+"(");
                 boolean first = true;
                 for(PieceDefinition pd : md.pieceDefinitions){
                     if(!first)
                         javaWrite(",\n"
                                   +"                      ");
-                    javaWrite("deserialized."+pd.name);
+                    javaWrite("this.view_"+md.name+"."+pd.name+"()"
+                              +(isJavaViewBuffer(pd)
+                                && !pd.type.toJavaType(this.flagSetDefinitions)
+                                .equals("MessageBuffer")
+                                ?".toVector()"
+                                :""));
                     first = false;
                 }
                 javaWrite(");\n");
-                javaWrite("        }catch(final MessageDeserializationException e){\n"
-                          +"          return false;\n"
-                          +"        }\n"
-                          +"    }\n");
             }
         }
-        
-        javaWrite("    default:\n"
-                 +"      return false;\n"
-                 +"    }\n"
-                 +"  }\n");
+
+        javaWrite("      default:\n"
+                  +"        return false;\n"
+                  +"      }\n"
+                  +"    }\n"
+                  +"  }\n"
+                  +"\n"
+                  +"  private static final ThreadLocal<Decoder> decoder\n"
+                  +"   = new ThreadLocal<Decoder>(){\n"
+                  +"      protected Decoder initialValue(){\n"
+                  +"        return new Decoder();\n"
+                  +"      }\n"
+                  +"    };\n"
+                  +"\n"
+                  +"  public static boolean handle(final MessageBuffer message,\n"
+                  +"                               final "+protocolName
+                  +"Handler handler){\n"
+                  +"    return decoder.get().handle(message,handler);\n"
+                  +"  }\n"
+                  +"\n"
+                  +"  public static boolean handle(final MessageBuffer message,\n"
+                  +"                               final MessageType messageType,\n"
+                  +"                               final "+protocolName
+                  +"Handler handler){\n"
+                  +"    return decoder.get().handle(message,messageType,handler);\n"
+                  +"  }\n");
 
         javaWrite("\n"
                  +"public static interface "+protocolName+"Handler\n"
@@ -962,6 +1206,7 @@ public class ProtocolDefinition{
         }
 
         this.javaWriteLookupMessageType();
+        this.javaWriteEncodedSizeTables();
         this.hppWriteMessageTypeToString();
         this.hppWriteGetMessageType();
         this.hppWriteMessageToString();